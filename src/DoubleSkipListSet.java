@@ -0,0 +1,296 @@
+
+/*
+ * This is a primitive double version of the custom skiplistset.
+ * It works the same way as SkipListSet but the key is stored right in the
+ * node as a double instead of a pointer to a boxed Double, and items are compared
+ * with the static Double.compare instead of a virtual compareTo call. Double.compare
+ * uses the same total order as Double.compareTo, so NaN and -0.0 behave like they do
+ * in the generic set. 
+ * 
+ * add, contains and remove take a double directly so nothing is boxed.
+ * 
+ */
+
+import java.util.*;
+
+/*
+ * external class, contains the primitive skiplistset methods as well as 2 internal iterator and node type class's
+ */
+public class DoubleSkipListSet {
+	static final int DEFAULT_HEIGHT_CEILING = 32;
+	int MAX_HEIGHT = 1;	/* number of levels currently in use, grows with log2(size) */
+	final int heightCeiling;	/* levels preallocated in the head, MAX_HEIGHT never goes past it */
+	private final LevelGenerator levelGenerator;	/* picks the height of each new node */
+	private PrimNode head;
+	private final PrimNode[] update;	/* search path reused by add and remove, one slot per level */
+	int size;	/*number of elements in the skip list (base level) */
+
+	/*
+	 * nodes for the primitive skip list.
+	 * 
+	 * holds the double key inline, and an array to store the nodes that are *next* to it.
+	 */
+	private static class PrimNode {
+		private final double value;
+		private final PrimNode[] next;
+
+		public PrimNode(double value, int height) {
+			this.value = value;
+			next = new PrimNode[height];
+		}
+	}
+
+	/*
+	 * Iterates over the skiplist items in order without boxing them.
+	 * hasNext returns a boolean if there is a next item.
+	 * nextDouble return the value of the next OR throws an exception.
+	 */
+	private class PrimIterator implements PrimitiveIterator.OfDouble {
+		private PrimNode currentNode;
+
+		public PrimIterator() {
+			currentNode = head.next[0];
+		}
+
+		@Override
+		public boolean hasNext() {
+			return currentNode != null;
+		}
+
+		@Override
+		public double nextDouble() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			double value = currentNode.value;
+			currentNode = currentNode.next[0];
+			return value;
+		}
+	}
+
+	/*
+	 * constructor for a new skiplist. Takes in and return nothing but initializes a new list
+	 * with the default height ceiling (32) and item count (size) of 0. 
+	 */
+	public DoubleSkipListSet() {
+		this(DEFAULT_HEIGHT_CEILING);
+	}
+
+	/*
+	 * constructor for a new skiplist. Takes in the most levels the list may ever use.
+	 * Throws an exception if the ceiling is less than 1.
+	 */
+	public DoubleSkipListSet(int heightCeiling) {
+		this(heightCeiling, null);
+	}
+
+	/*
+	 * constructor for a new skiplist. Takes in the most levels the list may ever use and the
+	 * level generator that picks node heights (null for a randomly seeded GeometricLevelGenerator,
+	 * pass a seeded one for repeatable runs). Throws an exception if the ceiling is less than 1.
+	 */
+	public DoubleSkipListSet(int heightCeiling, LevelGenerator levelGenerator) {
+		if (heightCeiling < 1) {
+			throw new IllegalArgumentException("heightCeiling must be at least 1");
+		}
+
+		this.heightCeiling = heightCeiling;
+		this.levelGenerator = levelGenerator == null ? new GeometricLevelGenerator() : levelGenerator;
+		head = new PrimNode(0.0, heightCeiling);
+		update = new PrimNode[heightCeiling];
+		size = 0;
+	}
+
+	/*
+	 * Take no input. Checks if there is at least 1 item.
+	 * If not it throws an exception; otherwise returns the first item in the skiplist. 
+	 */
+	public double first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return head.next[0].value;
+	}
+
+	/*
+	 * Takes no input. Checks if there is at least 1 item.
+	 * If there isn't, it throws an exception; otherwise it 
+	 * walks down the towers to the end and returns that last item.
+	 */
+	public double last() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		PrimNode node = head;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null) {
+				node = node.next[i];
+			}
+		}
+
+		return node.value;
+	}
+
+	/*
+	 * Takes no input. Acts as getter for the size variable and returns that.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Takes no input. Returns true if the size is 0, otherwise false. 
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/*
+	 * Takes in a double. Walks down the towers comparing keys with Double.compare
+	 * and returns true if the item is in the skiplist, otherwise false.
+	 */
+	public boolean contains(double element) {
+		PrimNode node = head;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && Double.compare(node.next[i].value, element) < 0) {
+				node = node.next[i];
+			}
+		}
+
+		node = node.next[0];
+		return node != null && Double.compare(node.value, element) == 0;
+	}
+
+	/*
+	 * Takes no input. Returns the custom PrimIterator.
+	 */
+	public PrimitiveIterator.OfDouble iterator() {
+		return new PrimIterator();
+	}
+
+	/*
+	 * Takes no input. Creates a double array and copies the items from the skiplist
+	 * into it in order. Returns the array. 
+	 */
+	public double[] toArray() {
+		double[] array = new double[size];
+		int index = 0;
+		PrimNode node = head.next[0];
+
+		while (node != null) {
+			array[index++] = node.value;
+			node = node.next[0];
+		}
+
+		return array;
+	}
+
+	/*
+	 * Takes a double. Finds the correct spot to add, filling the update buffer,
+	 * and returns false if the item is already there. Otherwise links in a new node
+	 * with a random height, raises the list height once the size passes the
+	 * next power of two and returns true.
+	 */
+	public boolean add(double t) {
+		PrimNode node = head;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && Double.compare(node.next[i].value, t) < 0) {
+				node = node.next[i];
+			}
+
+			update[i] = node;
+		}
+
+		node = node.next[0];
+
+		if (node != null && Double.compare(node.value, t) == 0) {
+			return false; // Element already exists
+		}
+
+		int height = randomHeight();
+		PrimNode newNode = new PrimNode(t, height);
+
+		for (int i = 0; i < height; i++) {
+			newNode.next[i] = update[i].next[i];
+			update[i].next[i] = newNode;
+		}
+
+		size++;
+
+		int level = levelFor(size);
+
+		if (level > MAX_HEIGHT) {
+			MAX_HEIGHT = level;
+		}
+
+		return true;
+	}
+
+	/*
+	 * Takes in a double and attempts to remove it. Searches for the item, filling
+	 * the update buffer, and returns false if it is not found. Otherwise unlinks the
+	 * node at every level it is on, adjusts the size variable and returns true.
+	 */
+	public boolean remove(double element) {
+		PrimNode node = head;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && Double.compare(node.next[i].value, element) < 0) {
+				node = node.next[i];
+			}
+
+			update[i] = node;
+		}
+
+		node = node.next[0];
+		if (node != null && Double.compare(node.value, element) == 0) {
+			for (int i = 0; i < MAX_HEIGHT; i++) {
+				if (update[i].next[i] != node) {
+					break;
+				}
+
+				update[i].next[i] = node.next[i];
+			}
+
+			size--;
+			return true;
+		}
+
+		return false; // Element not found
+	}
+
+	/*
+	 * Takes no input. Empties the skiplist by replacing the head with a
+	 * new, blank, one. Returns nothing.
+	 */
+	public void clear() {
+		head = new PrimNode(0.0, heightCeiling);
+		Arrays.fill(update, null);
+		size = 0;
+	}
+
+	/*
+	 * Takes no input. Asks the level generator for a height between 1
+	 * and the current list height.
+	 */
+	private int randomHeight() {
+		return levelGenerator.nextHeight(MAX_HEIGHT);
+	}
+
+	/*
+	 * Takes in an item count. Returns ceil(log2(count + 1)) clamped to
+	 * between 1 and the height ceiling, same as SkipListSet.
+	 */
+	private int levelFor(int count) {
+		int level = 32 - Integer.numberOfLeadingZeros(count);
+
+		return Math.max(1, Math.min(level, heightCeiling));
+	}
+
+}
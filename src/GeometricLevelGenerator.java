@@ -0,0 +1,85 @@
+
+/*
+ * The default level generator for the skiplists.
+ * Instead of flipping a coin per level with Math.random() (a shared, synchronized
+ * Random and a double per flip), it draws the whole height from one random 64 bit word:
+ * the height is 1 plus the number of trailing zero bits, divided by the bits per level.
+ * With k bits per level a node reaches each next level with probability p = 1 / 2^k,
+ * so k = 1 is the usual p = 1/2, k = 2 is p = 1/4 and so on.
+ *
+ * The words come from a SplitMix64 sequence kept in the generator, so there are no locks,
+ * nothing is shared between sets, and a seeded generator gives the same heights every run.
+ *
+ */
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * external class, a seedable geometric level generator
+ */
+public class GeometricLevelGenerator implements LevelGenerator {
+	private final int bitsPerLevel;	/* trailing zero bits needed per extra level, p = 1 / 2^bitsPerLevel */
+	private long state;	/* SplitMix64 state, advanced once per height */
+
+	/*
+	 * constructor for a new generator with p = 1/2 and a random seed.
+	 */
+	public GeometricLevelGenerator() {
+		this(1, ThreadLocalRandom.current().nextLong());
+	}
+
+	/*
+	 * constructor for a new generator with p = 1/2. Takes in the seed, the same seed gives the same heights.
+	 */
+	public GeometricLevelGenerator(long seed) {
+		this(1, seed);
+	}
+
+	/*
+	 * constructor for a new generator. Takes in the bits per level (1 for p = 1/2, 2 for p = 1/4, ...)
+	 * and the seed. Throws an exception if the bits per level is not between 1 and 32.
+	 */
+	public GeometricLevelGenerator(int bitsPerLevel, long seed) {
+		if (bitsPerLevel < 1 || bitsPerLevel > 32) {
+			throw new IllegalArgumentException("bitsPerLevel must be between 1 and 32");
+		}
+
+		this.bitsPerLevel = bitsPerLevel;
+		this.state = seed;
+	}
+
+	/*
+	 * Takes in the most levels the node may have. Draws one random word and returns
+	 * 1 plus its trailing zero count divided by the bits per level, capped at maxHeight.
+	 */
+	@Override
+	public int nextHeight(int maxHeight) {
+		int height = 1 + Long.numberOfTrailingZeros(nextLong()) / bitsPerLevel;
+
+		return Math.min(height, maxHeight);
+	}
+
+	/*
+	 * Takes no input. Returns the bits per level this generator was made with.
+	 */
+	public int bitsPerLevel() {
+		return bitsPerLevel;
+	}
+
+	/*
+	 * Takes no input. Returns the chance of a node reaching each next level.
+	 */
+	public double probability() {
+		return 1.0 / (1L << bitsPerLevel);
+	}
+
+	/*
+	 * Takes no input. Steps the SplitMix64 sequence and returns the next random word.
+	 */
+	private long nextLong() {
+		long z = (state += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,702 @@
+
+/*
+ * This is an indexable version of the custom skiplistset.
+ * Every forward link also records its span: how many base level nodes it
+ * jumps over. Adding up spans on the way down the towers gives the position
+ * of any node, so rank, get(index) and indexOf are O(log n) instead of
+ * walking k steps with an iterator. That makes percentile and "k-th smallest"
+ * queries cheap, e.g. get(size() / 2) for the median, and subList gives a
+ * view of a range of positions, e.g. the items between two percentiles.
+ * The subSet, headSet and tailSet views turn their bounds into positions
+ * with rank, so their size is O(log n) too.
+ *
+ * The link with no next node keeps the count of nodes left after its owner,
+ * so a span is always right even at the end of a level.
+ *
+ */
+
+import java.util.*;
+
+/*
+ * external class, contains the indexed skiplistset methods as well as an internal iterator and node type class
+ */
+public class IndexedSkipListSet<T extends Comparable<T>> extends AbstractSet<T> implements SortedSet<T> {
+	static final int DEFAULT_HEIGHT_CEILING = 32;
+	int MAX_HEIGHT = 1;	/* number of levels currently in use, grows with log2(size) */
+	final int heightCeiling;	/* levels preallocated in the head, MAX_HEIGHT never goes past it */
+	private final LevelGenerator levelGenerator;	/* picks the height of each new node */
+	private IndexedNode<T> head;
+	private final IndexedNode<T>[] update;	/* search path reused by add and remove, one slot per level */
+	private final int[] rank;	/* base level position of each update node, reused by add */
+	int size;	/*number of elements in the skip list (base level) */
+
+	/*
+	 * nodes for the indexed skip list.
+	 *
+	 * same as the SkipListSet node plus a span for each *next* link, the number of
+	 * base level steps that link covers.
+	 */
+	private static class IndexedNode<E> {
+		private final E value;
+		private final IndexedNode<E>[] next;
+		private final int[] span;
+
+		public IndexedNode(E value, int height) {
+			this.value = value;
+			next = newArray(height);
+			span = new int[height];
+		}
+
+		/*
+		 * Takes in a length. Returns an empty node array of that length, as in SkipListSet.
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		static <E> IndexedNode<E>[] newArray(int length) {
+			return new IndexedNode[length];
+		}
+	}
+
+	/*
+	 * Iterates over the skiplist items at the base level.
+	 * Remove is supported and goes through the set's remove so spans stay right.
+	 */
+	private class IndexedIterator implements Iterator<T> {
+		private IndexedNode<T> currentNode;
+		private T lastReturned;
+
+		public IndexedIterator() {
+			currentNode = head.next[0];
+		}
+
+		@Override
+		public boolean hasNext() {
+			return currentNode != null;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			lastReturned = currentNode.value;
+			currentNode = currentNode.next[0];
+			return lastReturned;
+		}
+
+		@Override
+		public void remove() {
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+
+			IndexedSkipListSet.this.remove(lastReturned);
+			lastReturned = null;
+		}
+	}
+
+	/*
+	 * A read only view of the items at a range of positions, returned by subList.
+	 * Positions are counted in the set as it is now, and the window is cut short
+	 * when the set has fewer items than its end.
+	 */
+	private class IndexRange extends AbstractList<T> {
+		private final int fromIndex;
+		private final int toIndex;
+
+		IndexRange(int fromIndex, int toIndex) {
+			this.fromIndex = fromIndex;
+			this.toIndex = toIndex;
+		}
+
+		@Override
+		public int size() {
+			return Math.max(0, Math.min(toIndex, size) - fromIndex);
+		}
+
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+
+			return IndexedSkipListSet.this.get(fromIndex + index);
+		}
+
+		/*
+		 * Takes in an object. Returns its position in the view from one rank lookup, or -1.
+		 */
+		@Override
+		public int indexOf(Object o) {
+			int index = IndexedSkipListSet.this.indexOf(o) - fromIndex;
+
+			return index >= 0 && index < size() ? index : -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			return indexOf(o);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
+
+		/*
+		 * Finds the first position with one span walk, then follows the base level.
+		 */
+		@Override
+		public Iterator<T> iterator() {
+			return new Iterator<T>() {
+				private int remaining = size();
+				private IndexedNode<T> currentNode = remaining > 0 ? nodeAt(fromIndex) : null;
+
+				@Override
+				public boolean hasNext() {
+					return remaining > 0 && currentNode != null;
+				}
+
+				@Override
+				public T next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					T value = currentNode.value;
+					currentNode = currentNode.next[0];
+					remaining--;
+					return value;
+				}
+			};
+		}
+	}
+
+	/*
+	 * A live view of the items between two bounds, returned by subSet, headSet and tailSet.
+	 * The bounds are items, and every call turns them into positions with rank, so size,
+	 * first and last are each a couple of O(log n) span walks rather than a walk over the
+	 * range, and the items in between are read as a subList window over those positions.
+	 * The lower bound is inclusive and the upper one exclusive, as SortedSet has it;
+	 * a null bound means that side is open.
+	 */
+	private class IndexedSubSet extends AbstractSet<T> implements SortedSet<T> {
+		private final T lo;
+		private final T hi;
+
+		IndexedSubSet(T lo, T hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		public Comparator<? super T> comparator() {
+			return null;
+		}
+
+		@Override
+		public SortedSet<T> subSet(T fromElement, T toElement) {
+			if (fromElement.compareTo(Objects.requireNonNull(toElement)) > 0) {
+				throw new IllegalArgumentException("fromElement > toElement");
+			}
+
+			checkInRange(fromElement);
+			checkInRange(toElement);
+			return new IndexedSubSet(fromElement, toElement);
+		}
+
+		@Override
+		public SortedSet<T> headSet(T toElement) {
+			checkInRange(toElement);
+			return new IndexedSubSet(lo, toElement);
+		}
+
+		@Override
+		public SortedSet<T> tailSet(T fromElement) {
+			checkInRange(fromElement);
+			return new IndexedSubSet(fromElement, hi);
+		}
+
+		/*
+		 * Counts the items in range as the difference of two ranks, O(log n).
+		 */
+		@Override
+		public int size() {
+			return toIndex() - fromIndex();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public T first() {
+			if (isEmpty()) {
+				throw new NoSuchElementException();
+			}
+
+			return get(fromIndex());
+		}
+
+		@Override
+		public T last() {
+			if (isEmpty()) {
+				throw new NoSuchElementException();
+			}
+
+			return get(toIndex() - 1);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean contains(Object o) {
+			return o != null && isValidType(o) && inRange((T) o) && IndexedSkipListSet.this.contains(o);
+		}
+
+		@Override
+		public boolean add(T t) {
+			if (t == null || !isValidType(t)) {
+				throw new NullPointerException();
+			}
+
+			if (!inRange(t)) {
+				throw new IllegalArgumentException("key out of range");
+			}
+
+			return IndexedSkipListSet.this.add(t);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean remove(Object o) {
+			return o != null && isValidType(o) && inRange((T) o) && IndexedSkipListSet.this.remove(o);
+		}
+
+		/*
+		 * Walks the subList window over the range's positions. Remove goes through the
+		 * set's remove so spans stay right; the walk has already moved past that node.
+		 */
+		@Override
+		public Iterator<T> iterator() {
+			Iterator<T> items = subList(fromIndex(), toIndex()).iterator();
+
+			return new Iterator<T>() {
+				private T lastReturned;
+
+				@Override
+				public boolean hasNext() {
+					return items.hasNext();
+				}
+
+				@Override
+				public T next() {
+					lastReturned = items.next();
+					return lastReturned;
+				}
+
+				@Override
+				public void remove() {
+					if (lastReturned == null) {
+						throw new IllegalStateException();
+					}
+
+					IndexedSkipListSet.this.remove(lastReturned);
+					lastReturned = null;
+				}
+			};
+		}
+
+		/*
+		 * Returns the position of the first item in range.
+		 */
+		private int fromIndex() {
+			return lo == null ? 0 : rank(lo);
+		}
+
+		/*
+		 * Returns the position just past the last item in range.
+		 */
+		private int toIndex() {
+			return hi == null ? size : rank(hi);
+		}
+
+		private boolean inRange(T t) {
+			return (lo == null || t.compareTo(lo) >= 0) && (hi == null || t.compareTo(hi) < 0);
+		}
+
+		/*
+		 * Throws an exception if a bound for a narrower view falls outside this one.
+		 * A bound may sit right on this view's upper bound, since both are exclusive there.
+		 */
+		private void checkInRange(T t) {
+			if (t == null) {
+				throw new NullPointerException();
+			}
+
+			if ((lo != null && t.compareTo(lo) < 0) || (hi != null && t.compareTo(hi) > 0)) {
+				throw new IllegalArgumentException("key out of range");
+			}
+		}
+	}
+
+	/*
+	 * constructor for a new indexed skiplist with the default height ceiling (32) and size 0.
+	 */
+	public IndexedSkipListSet() {
+		this(DEFAULT_HEIGHT_CEILING);
+	}
+
+	/*
+	 * constructor for a new indexed skiplist. Takes in the most levels the list may ever use.
+	 * Throws an exception if the ceiling is less than 1.
+	 */
+	public IndexedSkipListSet(int heightCeiling) {
+		this(heightCeiling, null);
+	}
+
+	/*
+	 * constructor for a new indexed skiplist. Takes in the most levels the list may ever use and the
+	 * level generator that picks node heights (null for a randomly seeded GeometricLevelGenerator,
+	 * pass a seeded one for repeatable runs). Throws an exception if the ceiling is less than 1.
+	 */
+	public IndexedSkipListSet(int heightCeiling, LevelGenerator levelGenerator) {
+		if (heightCeiling < 1) {
+			throw new IllegalArgumentException("heightCeiling must be at least 1");
+		}
+
+		this.heightCeiling = heightCeiling;
+		this.levelGenerator = levelGenerator == null ? new GeometricLevelGenerator() : levelGenerator;
+		head = new IndexedNode<>(null, heightCeiling);
+		update = IndexedNode.newArray(heightCeiling);
+		rank = new int[heightCeiling];
+		size = 0;
+	}
+
+	/*
+	 * constructor for a new indexed skiplist. Takes in any collection and adds all of it.
+	 */
+	public IndexedSkipListSet(Collection<? extends T> c) {
+		this();
+		addAll(c);
+	}
+
+	/*
+	 * return null, the set is always in natural order.
+	 */
+	@Override
+	public Comparator<? super T> comparator() {
+		return null;
+	}
+
+	/*
+	 * Takes in two items. Returns a live view of the items from fromElement (inclusive) up to
+	 * toElement (exclusive), see IndexedSubSet. Throws an exception if fromElement > toElement.
+	 */
+	@Override
+	public SortedSet<T> subSet(T fromElement, T toElement) {
+		if (fromElement.compareTo(Objects.requireNonNull(toElement)) > 0) {
+			throw new IllegalArgumentException("fromElement > toElement");
+		}
+
+		return new IndexedSubSet(fromElement, toElement);
+	}
+
+	/*
+	 * Takes in an item. Returns a live view of the items below it.
+	 */
+	@Override
+	public SortedSet<T> headSet(T toElement) {
+		return new IndexedSubSet(null, Objects.requireNonNull(toElement));
+	}
+
+	/*
+	 * Takes in an item. Returns a live view of the items from it up.
+	 */
+	@Override
+	public SortedSet<T> tailSet(T fromElement) {
+		return new IndexedSubSet(Objects.requireNonNull(fromElement), null);
+	}
+
+	/*
+	 * Take no input. Returns the first item, or throws an exception if the set is empty.
+	 */
+	@Override
+	public T first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return head.next[0].value;
+	}
+
+	/*
+	 * Take no input. Returns the last item, or throws an exception if the set is empty.
+	 */
+	@Override
+	public T last() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return get(size - 1);
+	}
+
+	/*
+	 * Takes no input. Acts as getter for the size variable and returns that.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Takes in an object. Returns true if it is in the skiplist, otherwise false.
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	/*
+	 * Takes no input. Returns the custom IndexedIterator.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new IndexedIterator();
+	}
+
+	/*
+	 * Takes in an index. Walks down the towers, following any link whose span still
+	 * fits in the distance left to go, and returns the item at that position (0 based).
+	 * Throws an exception if the index is out of range.
+	 */
+	public T get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		return nodeAt(index).value;
+	}
+
+	/*
+	 * Takes in a range of positions, fromIndex inclusive and toIndex exclusive. Returns a read only
+	 * List view of the items at those positions, e.g. subList(size() * 99 / 100, size()) for the top 1%.
+	 * Nothing is copied: get(i) is get(fromIndex + i) on the set, and iterating finds the first
+	 * position once then follows the base level, O(log n + k). The view is a window over positions,
+	 * so as the set changes items shift in and out of it, and it shrinks if the set no longer
+	 * reaches toIndex. Throws an exception if the range is out of bounds.
+	 */
+	public List<T> subList(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size);
+		}
+
+		return new IndexRange(fromIndex, toIndex);
+	}
+
+	/*
+	 * Takes in a position that is in range. Returns the node there, by the same span walk as get.
+	 */
+	private IndexedNode<T> nodeAt(int index) {
+		int target = index + 1;	/* base level steps from the head */
+		int traversed = 0;
+		IndexedNode<T> node = head;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && traversed + node.span[i] <= target) {
+				traversed += node.span[i];
+				node = node.next[i];
+			}
+
+			if (traversed == target) {
+				break;
+			}
+		}
+
+		return node;
+	}
+
+	/*
+	 * Takes in an item. Returns how many items in the set are less than it,
+	 * whether or not the item itself is in the set. Adds up the spans of the
+	 * links taken on the way down.
+	 */
+	public int rank(T element) {
+		int traversed = 0;
+		IndexedNode<T> node = head;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && node.next[i].value.compareTo(element) < 0) {
+				traversed += node.span[i];
+				node = node.next[i];
+			}
+		}
+
+		return traversed;
+	}
+
+	/*
+	 * Takes in an object. Returns its position (0 based) if it is in the set, otherwise -1.
+	 */
+	@SuppressWarnings("unchecked")
+	public int indexOf(Object o) {
+		if (o == null || !isValidType(o)) {
+			return -1;
+		}
+
+		T element = (T) o;
+		int traversed = 0;
+		IndexedNode<T> node = head;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && node.next[i].value.compareTo(element) < 0) {
+				traversed += node.span[i];
+				node = node.next[i];
+			}
+		}
+
+		node = node.next[0];
+		return node != null && node.value.equals(element) ? traversed : -1;
+	}
+
+	/*
+	 * Takes a generic item input. Throws an exception for a null or incompatible item.
+	 * Finds the spot to add while recording each update node's position, and returns false
+	 * if the item is already there. Otherwise links in a node with a random height, splits
+	 * the span of every link it goes under and adds one to every link that passes over it.
+	 */
+	@Override
+	public boolean add(T t) {
+		if (t == null || !isValidType(t)) {
+			throw new NullPointerException();
+		}
+
+		IndexedNode<T> node = head;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			rank[i] = i == MAX_HEIGHT - 1 ? 0 : rank[i + 1];
+
+			while (node.next[i] != null && node.next[i].value.compareTo(t) < 0) {
+				rank[i] += node.span[i];
+				node = node.next[i];
+			}
+
+			update[i] = node;
+		}
+
+		node = node.next[0];
+
+		if (node != null && node.value.equals(t)) {
+			return false; // Element already exists
+		}
+
+		int height = randomHeight();
+		IndexedNode<T> newNode = new IndexedNode<>(t, height);
+
+		for (int i = 0; i < height; i++) {
+			int before = rank[0] - rank[i];	/* base level steps from update[i] to the new node's predecessor */
+
+			newNode.next[i] = update[i].next[i];
+			update[i].next[i] = newNode;
+			newNode.span[i] = update[i].span[i] - before;
+			update[i].span[i] = before + 1;
+		}
+
+		for (int i = height; i < MAX_HEIGHT; i++) {
+			update[i].span[i]++;
+		}
+
+		size++;
+
+		int level = levelFor(size);
+
+		while (MAX_HEIGHT < level) {
+			head.span[MAX_HEIGHT] = size; // a new level is empty, its head link runs to the end
+			MAX_HEIGHT++;
+		}
+
+		return true;
+	}
+
+	/*
+	 * Takes in an object and attempts to remove it. Returns false if it is not in the set.
+	 * Otherwise unlinks it, folding its spans into the links before it, takes one off every
+	 * link that passed over it, adjusts the size variable and returns true.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean remove(Object o) {
+		if (o == null || !isValidType(o)) {
+			return false;
+		}
+
+		T element = (T) o;
+		IndexedNode<T> node = head;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && node.next[i].value.compareTo(element) < 0) {
+				node = node.next[i];
+			}
+
+			update[i] = node;
+		}
+
+		node = node.next[0];
+
+		if (node == null || !node.value.equals(element)) {
+			return false; // Element not found
+		}
+
+		for (int i = 0; i < MAX_HEIGHT; i++) {
+			if (update[i].next[i] == node) {
+				update[i].span[i] += node.span[i] - 1;
+				update[i].next[i] = node.next[i];
+			} else {
+				update[i].span[i]--;
+			}
+		}
+
+		size--;
+		return true;
+	}
+
+	/*
+	 * Takes no input. Empties the skiplist by replacing the head with a new, blank, one.
+	 */
+	@Override
+	public void clear() {
+		head = new IndexedNode<>(null, heightCeiling);
+		Arrays.fill(update, null);
+		MAX_HEIGHT = 1;
+		size = 0;
+	}
+
+	/*
+	 * Takes no input. Asks the level generator for a height between 1
+	 * and the current list height.
+	 */
+	private int randomHeight() {
+		return levelGenerator.nextHeight(MAX_HEIGHT);
+	}
+
+	/*
+	 * Takes in an item count. Returns ceil(log2(count + 1)) clamped to
+	 * between 1 and the height ceiling, same as SkipListSet.
+	 */
+	private int levelFor(int count) {
+		int level = 32 - Integer.numberOfLeadingZeros(count);
+
+		return Math.max(1, Math.min(level, heightCeiling));
+	}
+
+	/*
+	 * Takes in an object.
+	 * Checks if it is a comparable type.
+	 * Returns true if so, false otherwise.
+	 */
+	private boolean isValidType(Object o) {
+		return o instanceof Comparable;
+	}
+
+}
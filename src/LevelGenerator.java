@@ -0,0 +1,20 @@
+
+/*
+ * Picks the height of each new node for the skiplists.
+ * A skiplist asks for one height per insert and never shares a generator with
+ * another thread, so an implementation can keep plain unsynchronized state.
+ *
+ * See GeometricLevelGenerator for the default one.
+ *
+ */
+
+/*
+ * interface for the level generators, one method that returns a tower height
+ */
+public interface LevelGenerator {
+
+	/*
+	 * Takes in the most levels the node may have. Returns a height between 1 and that.
+	 */
+	int nextHeight(int maxHeight);
+}
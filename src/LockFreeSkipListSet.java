@@ -0,0 +1,721 @@
+
+/*
+ * This is a concurrent version of the custom skiplistset.
+ * It keeps the same tower layout as SkipListSet (a node with an array
+ * of *next* links) but every link is an AtomicMarkableReference so
+ * many threads can add, remove and search the set at the same time
+ * without a global lock.
+ *
+ * Removes are done in two steps. First the node is logically deleted by
+ * setting the mark bit on its own links (top level down to the base level),
+ * then any search that walks over a marked node snips it out with a CAS.
+ * contains never writes anything and never retries, so readers scale with
+ * the number of cores. subSet, headSet and tailSet give live range views
+ * that are weakly consistent in the same way as the iterator.
+ *
+ */
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * external class, contains the lock free skiplistset methods as well as an internal iterator and node type class
+ */
+public class LockFreeSkipListSet<T extends Comparable<T>> extends AbstractSet<T> implements SortedSet<T> {
+	static final int MAX_HEIGHT = 32;
+	private final LockFreeNode<T> head;
+	private final AtomicInteger topLevel;	/* highest level any node has been linked at, only grows */
+	private final LongAdder size;	/*number of elements in the skip list (base level) */
+
+	/*
+	 * nodes for the lock free skip list.
+	 *
+	 * same as the SkipListSet node, but each *next* slot holds a reference and a mark bit.
+	 * a marked slot means the node owning it has been (or is being) removed.
+	 */
+	private static class LockFreeNode<E> {
+		private final E value;
+		private final AtomicMarkableReference<LockFreeNode<E>>[] next;
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		public LockFreeNode(E value, int height) {
+			this.value = value;
+			next = new AtomicMarkableReference[height];
+
+			for (int i = 0; i < height; i++) {
+				next[i] = new AtomicMarkableReference<>(null, false);
+			}
+		}
+
+		/*
+		 * Takes in a length. Returns an empty array for the preds and succs of a search.
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		static <E> LockFreeNode<E>[] newArray(int length) {
+			return new LockFreeNode[length];
+		}
+	}
+
+	/*
+	 * Iterates over the skiplist items at the base level, skipping any node that
+	 * has been marked for removal. The iterator is weakly consistent: it never throws
+	 * ConcurrentModificationException and reflects some state of the set at or after creation.
+	 * Remove is supported and goes through the normal lock free remove.
+	 */
+	private class LockFreeSkipListSetIterator implements Iterator<T> {
+		private LockFreeNode<T> currentNode;
+		private T lastReturned;
+
+		public LockFreeSkipListSetIterator() {
+			currentNode = firstLiveNode(head);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return currentNode != null;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			lastReturned = currentNode.value;
+			currentNode = firstLiveNode(currentNode);
+			return lastReturned;
+		}
+
+		@Override
+		public void remove() {
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+
+			LockFreeSkipListSet.this.remove(lastReturned);
+			lastReturned = null;
+		}
+	}
+
+	/*
+	 * A live view of the items between two bounds, returned by subSet, headSet and tailSet.
+	 * Nothing is copied: every call goes to the skiplist itself, so it is as safe to use from
+	 * many threads as the set, and weakly consistent the same way (like ConcurrentSkipListSet's
+	 * views): iteration never throws ConcurrentModificationException, and size walks the range,
+	 * so under concurrent updates it is a moment in time estimate. Finding where the range starts
+	 * or ends is one read only descent. The lower bound is inclusive and the upper one exclusive,
+	 * as SortedSet has it; a null bound means that side is open.
+	 */
+	private class LockFreeSubSet extends AbstractSet<T> implements SortedSet<T> {
+		private final T lo;
+		private final T hi;
+
+		LockFreeSubSet(T lo, T hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		public Comparator<? super T> comparator() {
+			return null;
+		}
+
+		@Override
+		public SortedSet<T> subSet(T fromElement, T toElement) {
+			if (fromElement.compareTo(Objects.requireNonNull(toElement)) > 0) {
+				throw new IllegalArgumentException("fromElement > toElement");
+			}
+
+			checkInRange(fromElement);
+			checkInRange(toElement);
+			return new LockFreeSubSet(fromElement, toElement);
+		}
+
+		@Override
+		public SortedSet<T> headSet(T toElement) {
+			checkInRange(toElement);
+			return new LockFreeSubSet(lo, toElement);
+		}
+
+		@Override
+		public SortedSet<T> tailSet(T fromElement) {
+			checkInRange(fromElement);
+			return new LockFreeSubSet(fromElement, hi);
+		}
+
+		@Override
+		public T first() {
+			LockFreeNode<T> node = lowestNode();
+
+			if (node == null) {
+				throw new NoSuchElementException();
+			}
+
+			return node.value;
+		}
+
+		@Override
+		public T last() {
+			LockFreeNode<T> node = lastLiveNode(hi);
+
+			if (node == head || tooLow(node.value)) {
+				throw new NoSuchElementException();
+			}
+
+			return node.value;
+		}
+
+		/*
+		 * Counts the live items in range by walking them, O(log n + k).
+		 */
+		@Override
+		public int size() {
+			int count = 0;
+
+			for (LockFreeNode<T> node = lowestNode(); node != null && !tooHigh(node.value); node = firstLiveNode(node)) {
+				count++;
+			}
+
+			return count;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return lowestNode() == null;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean contains(Object o) {
+			return o != null && isValidType(o) && inRange((T) o) && LockFreeSkipListSet.this.contains(o);
+		}
+
+		@Override
+		public boolean add(T t) {
+			if (t == null || !isValidType(t)) {
+				throw new NullPointerException();
+			}
+
+			if (!inRange(t)) {
+				throw new IllegalArgumentException("key out of range");
+			}
+
+			return LockFreeSkipListSet.this.add(t);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean remove(Object o) {
+			return o != null && isValidType(o) && inRange((T) o) && LockFreeSkipListSet.this.remove(o);
+		}
+
+		/*
+		 * Walks the live nodes from the first one in range until the upper bound, weakly
+		 * consistent like the set's own iterator. Remove goes through the lock free remove.
+		 */
+		@Override
+		public Iterator<T> iterator() {
+			return new Iterator<T>() {
+				private LockFreeNode<T> currentNode = lowestNode();
+				private T lastReturned;
+
+				@Override
+				public boolean hasNext() {
+					return currentNode != null;
+				}
+
+				@Override
+				public T next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					lastReturned = currentNode.value;
+					currentNode = firstLiveNode(currentNode);
+
+					if (currentNode != null && tooHigh(currentNode.value)) {
+						currentNode = null;
+					}
+
+					return lastReturned;
+				}
+
+				@Override
+				public void remove() {
+					if (lastReturned == null) {
+						throw new IllegalStateException();
+					}
+
+					LockFreeSkipListSet.this.remove(lastReturned);
+					lastReturned = null;
+				}
+			};
+		}
+
+		/*
+		 * Returns the first live node in range, or null if the range is empty.
+		 */
+		private LockFreeNode<T> lowestNode() {
+			LockFreeNode<T> node = lo == null ? firstLiveNode(head) : ceilingNode(lo);
+
+			return node == null || tooHigh(node.value) ? null : node;
+		}
+
+		private boolean tooLow(T t) {
+			return lo != null && t.compareTo(lo) < 0;
+		}
+
+		private boolean tooHigh(T t) {
+			return hi != null && t.compareTo(hi) >= 0;
+		}
+
+		private boolean inRange(T t) {
+			return !tooLow(t) && !tooHigh(t);
+		}
+
+		/*
+		 * Throws an exception if a bound for a narrower view falls outside this one.
+		 * A bound may sit right on this view's upper bound, since both are exclusive there.
+		 */
+		private void checkInRange(T t) {
+			if (t == null) {
+				throw new NullPointerException();
+			}
+
+			if ((lo != null && t.compareTo(lo) < 0) || (hi != null && t.compareTo(hi) > 0)) {
+				throw new IllegalArgumentException("key out of range");
+			}
+		}
+	}
+
+	/*
+	 * constructor for a new lock free skiplist. Takes in and return nothing but initializes
+	 * a new list with a full height head and item count (size) of 0.
+	 */
+	public LockFreeSkipListSet() {
+		head = new LockFreeNode<>(null, MAX_HEIGHT);
+		topLevel = new AtomicInteger(1);
+		size = new LongAdder();
+	}
+
+	/*
+	 * constructor for a new lock free skiplist. Takes in any collection as a generic and initializes
+	 * the skiplist then adds all the values via addAll. Returns nothing.
+	 */
+	public LockFreeSkipListSet(Collection<? extends T> c) {
+		this();
+		addAll(c);
+	}
+
+	/*
+	 * return null, the set is always in natural order.
+	 */
+	@Override
+	public Comparator<? super T> comparator() {
+		return null;
+	}
+
+	/*
+	 * Takes in two items. Returns a weakly consistent live view of the items from fromElement
+	 * (inclusive) up to toElement (exclusive), see LockFreeSubSet. Throws an exception if
+	 * fromElement > toElement.
+	 */
+	@Override
+	public SortedSet<T> subSet(T fromElement, T toElement) {
+		if (fromElement.compareTo(Objects.requireNonNull(toElement)) > 0) {
+			throw new IllegalArgumentException("fromElement > toElement");
+		}
+
+		return new LockFreeSubSet(fromElement, toElement);
+	}
+
+	/*
+	 * Takes in an item. Returns a weakly consistent live view of the items below it.
+	 */
+	@Override
+	public SortedSet<T> headSet(T toElement) {
+		return new LockFreeSubSet(null, Objects.requireNonNull(toElement));
+	}
+
+	/*
+	 * Takes in an item. Returns a weakly consistent live view of the items from it up.
+	 */
+	@Override
+	public SortedSet<T> tailSet(T fromElement) {
+		return new LockFreeSubSet(Objects.requireNonNull(fromElement), null);
+	}
+
+	/*
+	 * Take no input. Returns the first item that is not marked for removal,
+	 * or throws an exception if there isn't one.
+	 */
+	@Override
+	public T first() {
+		LockFreeNode<T> node = firstLiveNode(head);
+
+		if (node == null) {
+			throw new NoSuchElementException();
+		}
+
+		return node.value;
+	}
+
+	/*
+	 * Takes no input. Walks down the towers to the last item that is not marked
+	 * for removal and returns it, or throws an exception if the set is empty.
+	 */
+	@Override
+	public T last() {
+		LockFreeNode<T> node = lastLiveNode(null);
+
+		if (node == head) {
+			throw new NoSuchElementException();
+		}
+
+		return node.value;
+	}
+
+	/*
+	 * Takes no input. Returns the number of items in the set. Under concurrent
+	 * updates this is a moment in time estimate, same as ConcurrentSkipListSet.
+	 */
+	@Override
+	public int size() {
+		long count = size.sum();
+
+		return count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.max(count, 0);
+	}
+
+	/*
+	 * Takes no input. Returns true if there is no live item at the base level.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return firstLiveNode(head) == null;
+	}
+
+	/*
+	 * Takes in an object. Checks that the object is real and compatible.
+	 * Walks down the towers without writing or retrying, stepping over any
+	 * marked node, and returns true if an unmarked node holds the item.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean contains(Object o) {
+		if (o == null || !isValidType(o)) {
+			return false;
+		}
+
+		T element = (T) o;
+		LockFreeNode<T> node = ceilingNode(element);
+
+		return node != null && node.value.compareTo(element) == 0;
+	}
+
+	/*
+	 * Takes no input. Returns the weakly consistent LockFreeSkipListSetIterator.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new LockFreeSkipListSetIterator();
+	}
+
+	/*
+	 * Takes a generic item input. Throws an exception for a null or incompatible item.
+	 * Otherwise picks a random height, raises the shared top level first so no search
+	 * can miss the new levels, then links the node at the base level with a CAS
+	 * (this is the point the item becomes part of the set) and finally links the
+	 * upper levels one by one, searching again whenever a CAS loses a race.
+	 * Returns true if the item was added, false if it was already there.
+	 */
+	@Override
+	public boolean add(T t) {
+		if (t == null || !isValidType(t)) {
+			throw new NullPointerException();
+		}
+
+		int height = randomHeight();
+		raiseTopLevel(height);
+
+		LockFreeNode<T>[] preds = LockFreeNode.newArray(MAX_HEIGHT);
+		LockFreeNode<T>[] succs = LockFreeNode.newArray(MAX_HEIGHT);
+
+		while (true) {
+			if (find(t, preds, succs)) {
+				return false; // Element already exists
+			}
+
+			LockFreeNode<T> newNode = new LockFreeNode<>(t, height);
+
+			for (int i = 0; i < height; i++) {
+				newNode.next[i].set(succs[i], false);
+			}
+
+			if (!preds[0].next[0].compareAndSet(succs[0], newNode, false, false)) {
+				continue;
+			}
+
+			size.increment();
+
+			for (int i = 1; i < height; i++) {
+				while (true) {
+					LockFreeNode<T> expected = newNode.next[i].getReference();
+
+					if (newNode.next[i].isMarked()) {
+						return true; // already being removed, stop building the tower
+					}
+
+					if (expected != succs[i] && !newNode.next[i].compareAndSet(expected, succs[i], false, false)) {
+						continue;
+					}
+
+					if (preds[i].next[i].compareAndSet(succs[i], newNode, false, false)) {
+						break;
+					}
+
+					find(t, preds, succs);
+				}
+			}
+
+			return true;
+		}
+	}
+
+	/*
+	 * Takes in an object and attempts to remove it. Checks that the
+	 * input is not null and a compatible type. If not, returns false.
+	 * Otherwise it marks the node's upper links from the top down, then races to
+	 * mark the base link. Only the thread that marks the base link removes the item
+	 * and returns true; a final search snips the node out of every level.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean remove(Object o) {
+		if (o == null || !isValidType(o)) {
+			return false;
+		}
+
+		T element = (T) o;
+		LockFreeNode<T>[] preds = LockFreeNode.newArray(MAX_HEIGHT);
+		LockFreeNode<T>[] succs = LockFreeNode.newArray(MAX_HEIGHT);
+		boolean[] marked = { false };
+
+		if (!find(element, preds, succs)) {
+			return false; // Element not found
+		}
+
+		LockFreeNode<T> node = succs[0];
+
+		for (int i = node.next.length - 1; i >= 1; i--) {
+			LockFreeNode<T> succ = node.next[i].get(marked);
+
+			while (!marked[0]) {
+				node.next[i].compareAndSet(succ, succ, false, true);
+				succ = node.next[i].get(marked);
+			}
+		}
+
+		LockFreeNode<T> succ = node.next[0].get(marked);
+
+		while (true) {
+			boolean markedByMe = node.next[0].compareAndSet(succ, succ, false, true);
+			succ = node.next[0].get(marked);
+
+			if (markedByMe) {
+				size.decrement();
+				find(element, preds, succs);
+				return true;
+			}
+
+			if (marked[0]) {
+				return false; // another thread removed it first
+			}
+		}
+	}
+
+	/*
+	 * Takes no input. Removes the items one at a time through the lock free remove,
+	 * so it is safe to call while other threads are using the set. Returns nothing.
+	 */
+	@Override
+	public void clear() {
+		LockFreeNode<T> node = firstLiveNode(head);
+
+		while (node != null) {
+			remove(node.value);
+			node = firstLiveNode(node);
+		}
+	}
+
+	/*
+	 * Takes in an item and two arrays to fill. Walks down the towers from the top level,
+	 * snipping out any marked node it passes with a CAS and starting over from the head
+	 * if that CAS fails. Fills preds/succs with the nodes on either side of the item at
+	 * every level and returns true if the base level successor holds the item.
+	 */
+	private boolean find(T element, LockFreeNode<T>[] preds, LockFreeNode<T>[] succs) {
+		boolean[] marked = { false };
+
+		retry:
+		while (true) {
+			LockFreeNode<T> pred = head;
+			LockFreeNode<T> curr = null;
+
+			for (int i = topLevel.get() - 1; i >= 0; i--) {
+				curr = pred.next[i].getReference();
+
+				while (curr != null) {
+					LockFreeNode<T> succ = curr.next[i].get(marked);
+
+					while (marked[0]) {
+						if (!pred.next[i].compareAndSet(curr, succ, false, false)) {
+							continue retry;
+						}
+
+						curr = succ;
+
+						if (curr == null) {
+							break;
+						}
+
+						succ = curr.next[i].get(marked);
+					}
+
+					if (curr != null && curr.value.compareTo(element) < 0) {
+						pred = curr;
+						curr = succ;
+					} else {
+						break;
+					}
+				}
+
+				preds[i] = pred;
+				succs[i] = curr;
+			}
+
+			return curr != null && curr.value.compareTo(element) == 0;
+		}
+	}
+
+	/*
+	 * Takes in an item. Walks down the towers like contains, without writing or retrying,
+	 * and returns the first node not marked for removal whose item is not less than it,
+	 * or null if there isn't one.
+	 */
+	private LockFreeNode<T> ceilingNode(T element) {
+		boolean[] marked = { false };
+		LockFreeNode<T> pred = head;
+		LockFreeNode<T> curr = null;
+
+		for (int i = topLevel.get() - 1; i >= 0; i--) {
+			curr = pred.next[i].getReference();
+
+			while (curr != null) {
+				LockFreeNode<T> succ = curr.next[i].get(marked);
+
+				while (marked[0]) {
+					curr = succ;
+
+					if (curr == null) {
+						break;
+					}
+
+					succ = curr.next[i].get(marked);
+				}
+
+				if (curr != null && curr.value.compareTo(element) < 0) {
+					pred = curr;
+					curr = succ;
+				} else {
+					break;
+				}
+			}
+		}
+
+		return curr;
+	}
+
+	/*
+	 * Takes in an item, or null for no bound. Walks down the towers to the last node not marked
+	 * for removal whose item is less than it (the last one of all with no bound) and returns it,
+	 * or the head if there isn't one.
+	 */
+	private LockFreeNode<T> lastLiveNode(T bound) {
+		LockFreeNode<T> node = head;
+		boolean[] marked = { false };
+
+		for (int i = topLevel.get() - 1; i >= 0; i--) {
+			LockFreeNode<T> next = node.next[i].getReference();
+
+			while (next != null && (bound == null || next.value.compareTo(bound) < 0)) {
+				LockFreeNode<T> after = next.next[i].get(marked);
+
+				if (!marked[0]) {
+					node = next;
+				}
+
+				next = after;
+			}
+		}
+
+		return node;
+	}
+
+	/*
+	 * Takes in a node. Returns the first node after it at the base level that is
+	 * not marked for removal, or null if there isn't one.
+	 */
+	private LockFreeNode<T> firstLiveNode(LockFreeNode<T> node) {
+		boolean[] marked = { false };
+		LockFreeNode<T> next = node.next[0].getReference();
+
+		while (next != null) {
+			LockFreeNode<T> after = next.next[0].get(marked);
+
+			if (!marked[0]) {
+				return next;
+			}
+
+			next = after;
+		}
+
+		return null;
+	}
+
+	/*
+	 * Takes in a height. Raises the shared top level to at least that height.
+	 * The top level never shrinks, so a search that reads it can never skip a
+	 * level that a node has already been linked at.
+	 */
+	private void raiseTopLevel(int height) {
+		int current = topLevel.get();
+
+		while (height > current && !topLevel.compareAndSet(current, height)) {
+			current = topLevel.get();
+		}
+	}
+
+	/*
+	 * Takes no input. Generates a random height from a single thread local random word,
+	 * one level per trailing zero bit (a coin flip per level, same as SkipListSet)
+	 * so threads never contend on a shared Random.
+	 */
+	private int randomHeight() {
+		int height = 1 + Integer.numberOfTrailingZeros(ThreadLocalRandom.current().nextInt());
+
+		return Math.min(height, MAX_HEIGHT);
+	}
+
+	/*
+	 * Takes in an object.
+	 * Checks if it is a comparable type.
+	 * Returns true if so, false otherwise.
+	 */
+	private boolean isValidType(Object o) {
+		return o instanceof Comparable;
+	}
+
+}
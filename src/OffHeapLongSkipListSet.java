@@ -0,0 +1,912 @@
+
+/*
+ * This is an off heap version of the custom skiplistset for long keys.
+ * Instead of a SkipListNode object plus a separate next[] array per key, every
+ * node is packed into one big direct ByteBuffer (the arena) and nodes point at
+ * each other with int offsets into that buffer. The java heap only holds this
+ * object and a small search buffer, so it stays flat no matter how many keys
+ * are stored and the GC has nothing to trace.
+ *
+ * It is reachable through the same SortedSet contract as SkipListSet (boxing
+ * at the boundary), range views included, and also has add(long), contains(long)
+ * and remove(long) that never box.
+ *
+ * The arena can also be a memory mapped file (see open). Everything the list
+ * needs is in the arena, so reopening a file is just mapping it again; no key
+ * has to be re-inserted.
+ *
+ * Arena layout, all ints/longs in native byte order:
+ *   header   magic, version, size, levels in use, top of arena, flags,
+ *            then one free list head per node height
+ *   head     a node of full height with no key
+ *   nodes    [key:8][height:4][next:4 * height], offset 0 means null
+ *
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/*
+ * external class, contains the off heap skiplistset methods as well as an internal iterator class
+ */
+public class OffHeapLongSkipListSet extends AbstractSet<Long> implements SortedSet<Long>, Closeable {
+	static final int MAGIC = 0x534B4950;	/* "SKIP" */
+	static final int VERSION = 1;
+	static final int HEIGHT_CEILING = 32;
+	static final int DEFAULT_CAPACITY = 1 << 20;
+
+	static final int MAGIC_OFFSET = 0;
+	static final int VERSION_OFFSET = 4;
+	static final int SIZE_OFFSET = 8;
+	static final int LEVEL_OFFSET = 12;
+	static final int TOP_OFFSET = 16;
+	static final int FLAGS_OFFSET = 20;
+	static final int FREE_LIST_OFFSET = 24;
+	static final int HEAD = FREE_LIST_OFFSET + 4 * HEIGHT_CEILING;
+
+	static final int KEY = 0;
+	static final int HEIGHT = 8;
+	static final int NEXT = 12;
+
+	static final int FLAG_DIRTY = 1;	/* set while there are changes that have not been forced to the file */
+
+	ByteBuffer arena;
+	private final int[] update;	/* search path reused by add and remove, one offset per level */
+	private final LevelGenerator levelGenerator;	/* picks the height of each new node */
+	private FileChannel channel;	/* the backing file when the arena is memory mapped, otherwise null */
+	private boolean dirty;	/* in memory copy of FLAG_DIRTY so each change doesn't rewrite the header */
+	private boolean closed;	/* true once a file backed set has been closed */
+
+	/*
+	 * Iterates over the skiplist items at the base level. Contains next and hasNext methods.
+	 * next boxes the key for the Iterator contract, nextLong does not.
+	 * remove takes the last key returned out with remove(long); the iterator has already
+	 * moved on to the next node, so freeing that one doesn't affect it. This is also what
+	 * AbstractSet's removeAll and retainAll go through.
+	 */
+	private class OffHeapIterator implements PrimitiveIterator.OfLong {
+		private int currentNode;
+		private long lastReturned;
+		private boolean removable;	/* true between next and remove */
+
+		public OffHeapIterator() {
+			currentNode = OffHeapLongSkipListSet.this.next(HEAD, 0);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return currentNode != 0;
+		}
+
+		@Override
+		public long nextLong() {
+			checkOpen();
+
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			lastReturned = key(currentNode);
+			currentNode = OffHeapLongSkipListSet.this.next(currentNode, 0);
+			removable = true;
+			return lastReturned;
+		}
+
+		@Override
+		public void remove() {
+			if (!removable) {
+				throw new IllegalStateException();
+			}
+
+			OffHeapLongSkipListSet.this.remove(lastReturned);
+			removable = false;
+		}
+	}
+
+	/*
+	 * A live view of the keys between two bounds, returned by subSet, headSet and tailSet.
+	 * Nothing is copied out of the arena: every call goes to the skiplist itself, so changes
+	 * show through both ways. Finding where the range starts or ends is one descent from the
+	 * head, then iteration follows the base level offsets until it reaches the upper bound.
+	 * The lower bound is inclusive and the upper one exclusive, as SortedSet has it; a null
+	 * bound means that side is open.
+	 */
+	private class OffHeapSubSet extends AbstractSet<Long> implements SortedSet<Long> {
+		private final Long lo;
+		private final Long hi;
+
+		OffHeapSubSet(Long lo, Long hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		public Comparator<? super Long> comparator() {
+			return null;
+		}
+
+		@Override
+		public SortedSet<Long> subSet(Long fromElement, Long toElement) {
+			if (fromElement.longValue() > toElement.longValue()) {
+				throw new IllegalArgumentException("fromElement > toElement");
+			}
+
+			checkInRange(fromElement);
+			checkInRange(toElement);
+			return new OffHeapSubSet(fromElement, toElement);
+		}
+
+		@Override
+		public SortedSet<Long> headSet(Long toElement) {
+			checkInRange(toElement);
+			return new OffHeapSubSet(lo, toElement);
+		}
+
+		@Override
+		public SortedSet<Long> tailSet(Long fromElement) {
+			checkInRange(fromElement);
+			return new OffHeapSubSet(fromElement, hi);
+		}
+
+		@Override
+		public Long first() {
+			int node = lowestNode();
+
+			if (node == 0) {
+				throw new NoSuchElementException();
+			}
+
+			return key(node);
+		}
+
+		@Override
+		public Long last() {
+			checkOpen();
+			int node = lowerNode(hi == null ? 0 : hi, hi != null);
+
+			if (node == HEAD || tooLow(key(node))) {
+				throw new NoSuchElementException();
+			}
+
+			return key(node);
+		}
+
+		/*
+		 * Counts the keys in range by walking them, O(log n + k).
+		 */
+		@Override
+		public int size() {
+			int count = 0;
+
+			for (int node = lowestNode(); node != 0 && !tooHigh(key(node)); node = next(node, 0)) {
+				count++;
+			}
+
+			return count;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return lowestNode() == 0;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof Long && inRange((Long) o) && OffHeapLongSkipListSet.this.contains(((Long) o).longValue());
+		}
+
+		@Override
+		public boolean add(Long t) {
+			if (t == null) {
+				throw new NullPointerException();
+			}
+
+			if (!inRange(t)) {
+				throw new IllegalArgumentException("key out of range");
+			}
+
+			return OffHeapLongSkipListSet.this.add(t.longValue());
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return o instanceof Long && inRange((Long) o) && OffHeapLongSkipListSet.this.remove(((Long) o).longValue());
+		}
+
+		/*
+		 * Walks the base level from the first key in range until the upper bound.
+		 * remove works like the set's own iterator, the iterator has already moved on.
+		 */
+		@Override
+		public PrimitiveIterator.OfLong iterator() {
+			return new PrimitiveIterator.OfLong() {
+				private int currentNode = lowestNode();
+				private long lastReturned;
+				private boolean removable;
+
+				@Override
+				public boolean hasNext() {
+					return currentNode != 0;
+				}
+
+				@Override
+				public long nextLong() {
+					checkOpen();
+
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					lastReturned = key(currentNode);
+					currentNode = OffHeapLongSkipListSet.this.next(currentNode, 0);
+
+					if (currentNode != 0 && tooHigh(key(currentNode))) {
+						currentNode = 0;
+					}
+
+					removable = true;
+					return lastReturned;
+				}
+
+				@Override
+				public void remove() {
+					if (!removable) {
+						throw new IllegalStateException();
+					}
+
+					OffHeapLongSkipListSet.this.remove(lastReturned);
+					removable = false;
+				}
+			};
+		}
+
+		/*
+		 * Returns the offset of the first node in range, or 0 if the range is empty.
+		 */
+		private int lowestNode() {
+			checkOpen();
+			int node = lo == null ? next(HEAD, 0) : ceilingNode(lo);
+
+			return node == 0 || tooHigh(key(node)) ? 0 : node;
+		}
+
+		private boolean tooLow(long key) {
+			return lo != null && key < lo;
+		}
+
+		private boolean tooHigh(long key) {
+			return hi != null && key >= hi;
+		}
+
+		private boolean inRange(long key) {
+			return !tooLow(key) && !tooHigh(key);
+		}
+
+		/*
+		 * Throws an exception if a bound for a narrower view falls outside this one.
+		 * A bound may sit right on this view's upper bound, since both are exclusive there.
+		 */
+		private void checkInRange(Long key) {
+			if (key == null) {
+				throw new NullPointerException();
+			}
+
+			if ((lo != null && key < lo) || (hi != null && key > hi)) {
+				throw new IllegalArgumentException("key out of range");
+			}
+		}
+	}
+
+	/*
+	 * constructor for a new off heap skiplist. Takes in and return nothing but
+	 * allocates a 1MB arena that doubles whenever it fills up.
+	 */
+	public OffHeapLongSkipListSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/*
+	 * constructor for a new off heap skiplist. Takes in the starting arena size in bytes
+	 * and allocates a direct buffer of that size with an empty list in it.
+	 */
+	public OffHeapLongSkipListSet(int initialCapacity) {
+		this(initialCapacity, null);
+	}
+
+	/*
+	 * constructor for a new off heap skiplist. Takes in the starting arena size in bytes and the
+	 * level generator that picks node heights (null for a randomly seeded GeometricLevelGenerator).
+	 */
+	public OffHeapLongSkipListSet(int initialCapacity, LevelGenerator levelGenerator) {
+		this(ByteBuffer.allocateDirect(Math.max(initialCapacity, nodeSize(HEIGHT_CEILING) + HEAD)), true, levelGenerator);
+	}
+
+	/*
+	 * constructor used by the other constructors. Takes in the buffer to use as the arena,
+	 * whether it should be formatted as a new empty list or already holds one, and the level generator.
+	 */
+	OffHeapLongSkipListSet(ByteBuffer arena, boolean format, LevelGenerator levelGenerator) {
+		this.arena = arena.order(ByteOrder.nativeOrder());
+		this.levelGenerator = levelGenerator == null ? new GeometricLevelGenerator() : levelGenerator;
+		update = new int[HEIGHT_CEILING];
+
+		if (format) {
+			format();
+		}
+	}
+
+	/*
+	 * Takes in a file path. Opens a memory mapped skiplist stored in that file,
+	 * creating and formatting a new 1MB file if it does not exist yet. See open(Path, int).
+	 */
+	public static OffHeapLongSkipListSet open(Path file) throws IOException {
+		return open(file, DEFAULT_CAPACITY);
+	}
+
+	/*
+	 * Takes in a file path and the size to create a new file with. Maps the whole file
+	 * as the arena. A new file is formatted and forced so it is valid on disk right away.
+	 * An existing file is used as is, which only costs the mmap. Throws an IOException
+	 * if the file is not a skiplist of this version or was not closed cleanly, since the
+	 * links in it may then be half written.
+	 */
+	public static OffHeapLongSkipListSet open(Path file, int initialCapacity) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			boolean create = channel.size() == 0;
+			long capacity = create ? Math.max(initialCapacity, nodeSize(HEIGHT_CEILING) + HEAD) : channel.size();
+
+			if (capacity < HEAD + nodeSize(HEIGHT_CEILING)) {
+				throw new IOException(file + " is too short to be a skiplist file");
+			}
+
+			if (capacity > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large for an int offset arena");
+			}
+
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+			OffHeapLongSkipListSet set = new OffHeapLongSkipListSet(mapped, create, null);
+			set.channel = channel;
+
+			if (create) {
+				set.force();
+			} else {
+				set.checkHeader(file);
+			}
+
+			return set;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/*
+	 * Takes no input. Checkpoints a memory mapped skiplist: flushes every changed page to
+	 * the file, then clears the dirty flag and flushes the header again, so the file
+	 * only ever says it is clean once the nodes it points to are on disk.
+	 * Does nothing for a skiplist that is not backed by a file.
+	 */
+	public void force() {
+		checkOpen();
+
+		if (channel == null) {
+			return;
+		}
+
+		MappedByteBuffer mapped = (MappedByteBuffer) arena;
+		mapped.force();
+		arena.putInt(FLAGS_OFFSET, arena.getInt(FLAGS_OFFSET) & ~FLAG_DIRTY);
+		mapped.force();
+		dirty = false;
+	}
+
+	/*
+	 * Takes no input. Forces a memory mapped skiplist to disk and closes the file.
+	 * The set can't be used after this, anything but close throws an IllegalStateException.
+	 * Does nothing for a skiplist not backed by a file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel == null) {
+			return;
+		}
+
+		force();
+		channel.close();
+		channel = null;
+		closed = true;
+	}
+
+	/*
+	 * return null, keys are always in natural long order.
+	 */
+	@Override
+	public Comparator<? super Long> comparator() {
+		return null;
+	}
+
+	/*
+	 * Takes in two keys. Returns a live view of the keys from fromElement (inclusive) up to
+	 * toElement (exclusive), see OffHeapSubSet. Throws an exception if fromElement > toElement.
+	 */
+	@Override
+	public SortedSet<Long> subSet(Long fromElement, Long toElement) {
+		if (fromElement.longValue() > toElement.longValue()) {
+			throw new IllegalArgumentException("fromElement > toElement");
+		}
+
+		return new OffHeapSubSet(fromElement, toElement);
+	}
+
+	/*
+	 * Takes in a key. Returns a live view of the keys below it.
+	 */
+	@Override
+	public SortedSet<Long> headSet(Long toElement) {
+		return new OffHeapSubSet(null, Objects.requireNonNull(toElement));
+	}
+
+	/*
+	 * Takes in a key. Returns a live view of the keys from it up.
+	 */
+	@Override
+	public SortedSet<Long> tailSet(Long fromElement) {
+		return new OffHeapSubSet(Objects.requireNonNull(fromElement), null);
+	}
+
+	/*
+	 * Take no input. Checks if there is at least 1 item.
+	 * If not it throws an exception; otherwise returns the first item in the skiplist.
+	 */
+	@Override
+	public Long first() {
+		return firstLong();
+	}
+
+	/*
+	 * Same as first, without boxing the key.
+	 */
+	public long firstLong() {
+		if (size() == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return key(next(HEAD, 0));
+	}
+
+	/*
+	 * Takes no input. Checks if there is at least 1 item.
+	 * If there isn't, it throws an exception; otherwise it
+	 * walks down the towers to the end and returns that last item.
+	 */
+	@Override
+	public Long last() {
+		return lastLong();
+	}
+
+	/*
+	 * Same as last, without boxing the key.
+	 */
+	public long lastLong() {
+		if (size() == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return key(lowerNode(0, false));
+	}
+
+	/*
+	 * Takes no input. Returns the size stored in the arena header.
+	 */
+	@Override
+	public int size() {
+		checkOpen();
+		return arena.getInt(SIZE_OFFSET);
+	}
+
+	/*
+	 * Takes no input. Returns true if the size is 0, otherwise false.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/*
+	 * Takes in an object. Returns false unless it is a Long, otherwise
+	 * unboxes it and checks with contains(long).
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Long && contains(((Long) o).longValue());
+	}
+
+	/*
+	 * Takes in a long. Walks down the towers following int offsets
+	 * and returns true if the key is in the skiplist, otherwise false.
+	 */
+	public boolean contains(long element) {
+		checkOpen();
+		int node = HEAD;
+
+		for (int i = levels() - 1; i >= 0; i--) {
+			int next = next(node, i);
+
+			while (next != 0 && key(next) < element) {
+				node = next;
+				next = next(node, i);
+			}
+		}
+
+		node = next(node, 0);
+		return node != 0 && key(node) == element;
+	}
+
+	/*
+	 * Takes no input. Returns the custom OffHeapIterator.
+	 */
+	@Override
+	public PrimitiveIterator.OfLong iterator() {
+		checkOpen();
+		return new OffHeapIterator();
+	}
+
+	/*
+	 * Takes in a Long. Throws an exception if it is null,
+	 * otherwise unboxes it and adds it with add(long).
+	 */
+	@Override
+	public boolean add(Long t) {
+		if (t == null) {
+			throw new NullPointerException();
+		}
+
+		return add(t.longValue());
+	}
+
+	/*
+	 * Takes a long. Finds the correct spot to add, filling the update buffer,
+	 * and returns false if the key is already there. Otherwise carves a node
+	 * out of the arena (reusing a freed node of the same height if there is one),
+	 * links it in at every level of its random height and returns true.
+	 */
+	public boolean add(long t) {
+		checkOpen();
+		int levels = levels();
+		int node = HEAD;
+
+		for (int i = levels - 1; i >= 0; i--) {
+			int next = next(node, i);
+
+			while (next != 0 && key(next) < t) {
+				node = next;
+				next = next(node, i);
+			}
+
+			update[i] = node;
+		}
+
+		node = next(node, 0);
+
+		if (node != 0 && key(node) == t) {
+			return false; // Element already exists
+		}
+
+		markDirty();
+
+		int height = randomHeight(levels);
+		int newNode = allocate(height);
+		arena.putLong(newNode + KEY, t);
+
+		for (int i = 0; i < height; i++) {
+			setNext(newNode, i, next(update[i], i));
+			setNext(update[i], i, newNode);
+		}
+
+		int size = size() + 1;
+		arena.putInt(SIZE_OFFSET, size);
+
+		int level = Math.max(1, Math.min(32 - Integer.numberOfLeadingZeros(size), HEIGHT_CEILING));
+
+		if (level > levels) {
+			arena.putInt(LEVEL_OFFSET, level);
+		}
+
+		return true;
+	}
+
+	/*
+	 * Takes in an object. Returns false unless it is a Long, otherwise
+	 * unboxes it and removes it with remove(long).
+	 */
+	@Override
+	public boolean remove(Object o) {
+		return o instanceof Long && remove(((Long) o).longValue());
+	}
+
+	/*
+	 * Takes in a long and attempts to remove it. Searches for the key, filling
+	 * the update buffer, and returns false if it is not found. Otherwise unlinks
+	 * the node at every level it is on, puts its bytes on the free list for its
+	 * height, adjusts the size and returns true.
+	 */
+	public boolean remove(long element) {
+		checkOpen();
+		int levels = levels();
+		int node = HEAD;
+
+		for (int i = levels - 1; i >= 0; i--) {
+			int next = next(node, i);
+
+			while (next != 0 && key(next) < element) {
+				node = next;
+				next = next(node, i);
+			}
+
+			update[i] = node;
+		}
+
+		node = next(node, 0);
+		if (node != 0 && key(node) == element) {
+			markDirty();
+
+			for (int i = 0; i < levels; i++) {
+				if (next(update[i], i) != node) {
+					break;
+				}
+
+				setNext(update[i], i, next(node, i));
+			}
+
+			release(node);
+			arena.putInt(SIZE_OFFSET, size() - 1);
+			return true;
+		}
+
+		return false; // Element not found
+	}
+
+	/*
+	 * Takes no input. Empties the skiplist by formatting the arena again.
+	 * The buffer itself is kept so no memory is handed back or reallocated.
+	 */
+	@Override
+	public void clear() {
+		checkOpen();
+		format();
+		markDirty();
+	}
+
+	/*
+	 * Takes no input. Returns how many bytes of the arena are in use,
+	 * including the header, the head node and any freed nodes waiting for reuse.
+	 */
+	public int arenaBytesUsed() {
+		checkOpen();
+		return arena.getInt(TOP_OFFSET);
+	}
+
+	/*
+	 * Takes no input. Writes an empty list into the arena: a fresh header,
+	 * empty free lists and a full height head node with no links.
+	 */
+	void format() {
+		arena.putInt(MAGIC_OFFSET, MAGIC);
+		arena.putInt(VERSION_OFFSET, VERSION);
+		arena.putInt(SIZE_OFFSET, 0);
+		arena.putInt(LEVEL_OFFSET, 1);
+		arena.putInt(FLAGS_OFFSET, 0);
+
+		for (int i = 0; i < HEIGHT_CEILING; i++) {
+			arena.putInt(FREE_LIST_OFFSET + 4 * i, 0);
+		}
+
+		arena.putInt(HEAD + HEIGHT, HEIGHT_CEILING);
+
+		for (int i = 0; i < HEIGHT_CEILING; i++) {
+			setNext(HEAD, i, 0);
+		}
+
+		arena.putInt(TOP_OFFSET, HEAD + nodeSize(HEIGHT_CEILING));
+		Arrays.fill(update, 0);
+		dirty = false;
+	}
+
+	/*
+	 * Takes in the file being opened, for the error message. Checks the header of an
+	 * existing arena and throws an IOException if it can't be used as is.
+	 */
+	private void checkHeader(Path file) throws IOException {
+		if (arena.getInt(MAGIC_OFFSET) != MAGIC || arena.getInt(VERSION_OFFSET) != VERSION) {
+			throw new IOException(file + " is not a skiplist file of version " + VERSION);
+		}
+
+		if ((arena.getInt(FLAGS_OFFSET) & FLAG_DIRTY) != 0) {
+			throw new IOException(file + " was not closed cleanly");
+		}
+
+		if (arena.getInt(TOP_OFFSET) > arena.capacity()) {
+			throw new IOException(file + " is truncated");
+		}
+	}
+
+	/*
+	 * Takes no input. Throws an IllegalStateException if the set was backed by a file that has
+	 * been closed, rather than let it carry on against an unmapped arena.
+	 */
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("skiplist file is closed");
+		}
+	}
+
+	/*
+	 * Takes no input. Sets the dirty flag in the header before the first change
+	 * after a checkpoint, so a crash before the next force is caught on reopen.
+	 */
+	private void markDirty() {
+		if (!dirty) {
+			arena.putInt(FLAGS_OFFSET, arena.getInt(FLAGS_OFFSET) | FLAG_DIRTY);
+			dirty = true;
+		}
+	}
+
+	/*
+	 * Takes in a node height. Pops a freed node of that height if there is one,
+	 * otherwise bumps the top of the arena, growing it first if it is full.
+	 * Returns the offset of the new node with its height written in.
+	 */
+	private int allocate(int height) {
+		int freeSlot = FREE_LIST_OFFSET + 4 * (height - 1);
+		int node = arena.getInt(freeSlot);
+
+		if (node != 0) {
+			arena.putInt(freeSlot, next(node, 0));
+			return node;
+		}
+
+		int top = arena.getInt(TOP_OFFSET);
+		int bytes = nodeSize(height);
+
+		if ((long) top + bytes > arena.capacity()) {
+			grow((long) top + bytes);
+		}
+
+		arena.putInt(top + HEIGHT, height);
+		arena.putInt(TOP_OFFSET, top + bytes);
+		return top;
+	}
+
+	/*
+	 * Takes in a node that has been unlinked. Pushes it on the free list for
+	 * its height, using its base level slot as the free list link.
+	 */
+	private void release(int node) {
+		int freeSlot = FREE_LIST_OFFSET + 4 * (arena.getInt(node + HEIGHT) - 1);
+
+		setNext(node, 0, arena.getInt(freeSlot));
+		arena.putInt(freeSlot, node);
+	}
+
+	/*
+	 * Takes in the number of bytes the arena has to hold. Allocates a new direct
+	 * buffer of double the size (or more if needed) and copies the arena into it.
+	 * A memory mapped arena instead extends the file and maps it again, the
+	 * old pages are shared with the new mapping so nothing is copied.
+	 * Offsets stay the same, so nothing else has to change.
+	 * Throws an exception once the arena would pass the 2GB an int offset can reach.
+	 */
+	void grow(long minCapacity) {
+		long capacity = Math.max((long) arena.capacity() * 2, minCapacity);
+
+		if (minCapacity > Integer.MAX_VALUE) {
+			throw new IllegalStateException("off heap arena is full");
+		}
+
+		if (channel != null) {
+			try {
+				arena = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(capacity, Integer.MAX_VALUE)).order(ByteOrder.nativeOrder());
+			} catch (IOException e) {
+				throw new IllegalStateException("could not grow " + channel, e);
+			}
+
+			return;
+		}
+
+		ByteBuffer bigger = ByteBuffer.allocateDirect((int) Math.min(capacity, Integer.MAX_VALUE)).order(ByteOrder.nativeOrder());
+		bigger.put(arena.duplicate().clear());
+		arena = bigger;
+	}
+
+	/*
+	 * Takes in the levels in use. Asks the level generator for a height
+	 * between 1 and the levels in use.
+	 */
+	private int randomHeight(int levels) {
+		return levelGenerator.nextHeight(levels);
+	}
+
+	/*
+	 * Takes in a key. Walks down the towers and returns the offset of the first node
+	 * with a key not less than it, or 0 if there isn't one.
+	 */
+	private int ceilingNode(long key) {
+		int node = HEAD;
+
+		for (int i = levels() - 1; i >= 0; i--) {
+			int next = next(node, i);
+
+			while (next != 0 && key(next) < key) {
+				node = next;
+				next = next(node, i);
+			}
+		}
+
+		return next(node, 0);
+	}
+
+	/*
+	 * Takes in a key and whether it bounds the walk. Walks down the towers and returns the
+	 * offset of the last node with a key less than it (or the last node of all when it
+	 * doesn't bound), or HEAD if there isn't one.
+	 */
+	private int lowerNode(long key, boolean bounded) {
+		int node = HEAD;
+
+		for (int i = levels() - 1; i >= 0; i--) {
+			int next = next(node, i);
+
+			while (next != 0 && (!bounded || key(next) < key)) {
+				node = next;
+				next = next(node, i);
+			}
+		}
+
+		return node;
+	}
+
+	/*
+	 * Takes no input. Returns the number of levels in use from the header.
+	 */
+	private int levels() {
+		return arena.getInt(LEVEL_OFFSET);
+	}
+
+	/*
+	 * Takes in a node offset. Returns the key stored in it.
+	 */
+	private long key(int node) {
+		return arena.getLong(node + KEY);
+	}
+
+	/*
+	 * Takes in a node offset and a level. Returns the offset of the next node at that level.
+	 */
+	private int next(int node, int level) {
+		return arena.getInt(node + NEXT + 4 * level);
+	}
+
+	/*
+	 * Takes in a node offset, a level and the offset to point at. Sets the next node at that level.
+	 */
+	private void setNext(int node, int level, int next) {
+		arena.putInt(node + NEXT + 4 * level, next);
+	}
+
+	/*
+	 * Takes in a height. Returns how many bytes a node of that height takes in the arena.
+	 */
+	static int nodeSize(int height) {
+		return NEXT + 4 * height;
+	}
+
+}
@@ -0,0 +1,397 @@
+
+/*
+ * Micro benchmarks for the skiplist, run separately from the test harness.
+ * Where the harness times one pass of each case in milliseconds, this runs every
+ * benchmark through warmup iterations first (so the JIT has compiled it), then
+ * measured iterations, and reports per operation numbers:
+ *
+ *   ns/op   average time of one operation over the measured iterations
+ *   B/op    bytes allocated per operation by the benchmark thread
+ *   p50/p99/p99.9   per operation latency percentiles from separately timed iterations
+ *
+ * Benchmarks are add, contains, remove and iterate for String, Integer and Double items
+ * on SkipListSet, TreeSet, ConcurrentSkipListSet and LinkedList, plus reBalance on SkipListSet.
+ * LinkedList is O(n) per lookup, so it runs on a smaller size (shown in the size column).
+ * Each iteration gets fresh state where the operation changes it (add, remove, reBalance),
+ * built outside the timed part. Results go into a volatile sink so the JIT can't drop the work.
+ *
+ * Usage: java SkipListBenchmark [size] [warmup iterations] [measured iterations]
+ *
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Supplier;
+
+public class SkipListBenchmark {
+	static final long SEED = 1;
+	static final int LINKED_LIST_SIZE = 10000;
+
+	static volatile long sink;	/* every operation's result ends up here so none of the work is dead code */
+
+	/*
+	 * One benchmark: fresh state for each iteration and the operation being measured.
+	 */
+	private interface Trial {
+		/* builds the state for one iteration, not timed */
+		void setup();
+
+		/* number of operations in one iteration */
+		int ops();
+
+		/* runs operation number i and returns something for the sink */
+		long op(int i);
+	}
+
+	/*
+	 * Results of one benchmark.
+	 */
+	private static class Result {
+		double nsPerOp;
+		double bytesPerOp;
+		long p50;
+		long p99;
+		long p999;
+	}
+
+	private final int warmups;
+	private final int iterations;
+
+	public SkipListBenchmark(int warmups, int iterations) {
+		this.warmups = warmups;
+		this.iterations = iterations;
+	}
+
+	/*
+	 * Takes in a trial. Runs the warmup iterations, then the measured iterations for the
+	 * average time and allocation, then the same number again with every operation timed
+	 * on its own for the percentiles (timing each call adds a little to those, so they are
+	 * kept apart from the average). Returns the results.
+	 */
+	Result measure(Trial trial) {
+		for (int i = 0; i < warmups; i++) {
+			trial.setup();
+			runIteration(trial);
+		}
+
+		long totalNanos = 0;
+		long totalBytes = 0;
+		long totalOps = 0;
+
+		for (int i = 0; i < iterations; i++) {
+			trial.setup();
+			long bytes = allocatedBytes();
+			totalNanos += runIteration(trial);
+			totalBytes += allocatedBytes() - bytes;
+			totalOps += trial.ops();
+		}
+
+		long[] samples = new long[iterations * trial.ops()];
+		int count = 0;
+
+		for (int i = 0; i < iterations; i++) {
+			trial.setup();
+			count = sampleIteration(trial, samples, count);
+		}
+
+		Arrays.sort(samples, 0, count);
+
+		Result result = new Result();
+		result.nsPerOp = (double) totalNanos / totalOps;
+		result.bytesPerOp = (double) totalBytes / totalOps;
+		result.p50 = percentile(samples, count, 0.50);
+		result.p99 = percentile(samples, count, 0.99);
+		result.p999 = percentile(samples, count, 0.999);
+		return result;
+	}
+
+	/*
+	 * Takes in a trial. Runs every operation once and returns the nanoseconds it took.
+	 */
+	private static long runIteration(Trial trial) {
+		int ops = trial.ops();
+		long sum = 0;
+		long start = System.nanoTime();
+
+		for (int i = 0; i < ops; i++) {
+			sum += trial.op(i);
+		}
+
+		long end = System.nanoTime();
+		sink += sum;
+		return end - start;
+	}
+
+	/*
+	 * Takes in a trial, the sample array and how much of it is filled. Runs every operation
+	 * once, timing each one into the array. Returns the new fill count.
+	 */
+	private static int sampleIteration(Trial trial, long[] samples, int count) {
+		int ops = trial.ops();
+		long sum = 0;
+
+		for (int i = 0; i < ops; i++) {
+			long start = System.nanoTime();
+			sum += trial.op(i);
+			samples[count++] = System.nanoTime() - start;
+		}
+
+		sink += sum;
+		return count;
+	}
+
+	private static long percentile(long[] sorted, int count, double p) {
+		if (count == 0) {
+			return 0;
+		}
+
+		return sorted[Math.min(count - 1, (int) Math.ceil(p * count) - 1)];
+	}
+
+	/*
+	 * Bytes allocated so far by the calling thread, or 0 if the JVM can't tell us.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+		}
+
+		return 0;
+	}
+
+	/*
+	 * Takes in the items and a way to make an empty collection. Returns a trial that adds
+	 * every item to a new collection.
+	 */
+	private static <T> Trial addTrial(List<T> values, Supplier<Collection<T>> factory) {
+		return new Trial() {
+			private Collection<T> coll;
+
+			@Override
+			public void setup() {
+				coll = factory.get();
+			}
+
+			@Override
+			public int ops() {
+				return values.size();
+			}
+
+			@Override
+			public long op(int i) {
+				return coll.add(values.get(i)) ? 1 : 0;
+			}
+		};
+	}
+
+	/*
+	 * Takes in the items, the lookups and a way to make an empty collection. Returns a trial
+	 * that looks up every strike in a collection holding the items (built once).
+	 */
+	private static <T> Trial containsTrial(List<T> values, List<T> strikes, Supplier<Collection<T>> factory) {
+		return new Trial() {
+			private Collection<T> coll;
+
+			@Override
+			public void setup() {
+				if (coll == null) {
+					coll = factory.get();
+					coll.addAll(values);
+				}
+			}
+
+			@Override
+			public int ops() {
+				return strikes.size();
+			}
+
+			@Override
+			public long op(int i) {
+				return coll.contains(strikes.get(i)) ? 1 : 0;
+			}
+		};
+	}
+
+	/*
+	 * Takes in the items, the items to remove and a way to make an empty collection. Returns a
+	 * trial that removes each of them from a fresh collection holding the items.
+	 */
+	private static <T> Trial removeTrial(List<T> values, List<T> removes, Supplier<Collection<T>> factory) {
+		return new Trial() {
+			private Collection<T> coll;
+
+			@Override
+			public void setup() {
+				coll = factory.get();
+				coll.addAll(values);
+			}
+
+			@Override
+			public int ops() {
+				return removes.size();
+			}
+
+			@Override
+			public long op(int i) {
+				return coll.remove(removes.get(i)) ? 1 : 0;
+			}
+		};
+	}
+
+	/*
+	 * Takes in the items and a way to make an empty collection. Returns a trial that steps
+	 * an iterator over a collection holding the items, one item per operation.
+	 */
+	private static <T> Trial iterateTrial(List<T> values, Supplier<Collection<T>> factory) {
+		return new Trial() {
+			private Collection<T> coll;
+			private Iterator<T> iterator;
+			private int ops;
+
+			@Override
+			public void setup() {
+				if (coll == null) {
+					coll = factory.get();
+					coll.addAll(values);
+					ops = coll.size();
+				}
+
+				iterator = coll.iterator();
+			}
+
+			@Override
+			public int ops() {
+				return ops;
+			}
+
+			@Override
+			public long op(int i) {
+				return iterator.next().hashCode();
+			}
+		};
+	}
+
+	/*
+	 * Takes in the items. Returns a trial that rebalances a freshly built SkipListSet,
+	 * the whole rebalance being one operation.
+	 */
+	private static <T extends Comparable<T>> Trial reBalanceTrial(List<T> values) {
+		return new Trial() {
+			private SkipListSet<T> set;
+
+			@Override
+			public void setup() {
+				set = new SkipListSet<T>(new GeometricLevelGenerator(SEED));
+				set.addAll(values);
+			}
+
+			@Override
+			public int ops() {
+				return 1;
+			}
+
+			@Override
+			public long op(int i) {
+				set.reBalance();
+				return set.size();
+			}
+		};
+	}
+
+	/*
+	 * Takes in a label, the size and a trial. Measures it and prints one row of the table.
+	 */
+	private void report(String type, String impl, String bench, int size, Trial trial) {
+		Result r = measure(trial);
+
+		System.out.printf("%-8s %-22s %-10s %,10d %,12.1f %,10.1f %,10d %,10d %,10d\n",
+				type, impl, bench, size, r.nsPerOp, r.bytesPerOp, r.p50, r.p99, r.p999);
+		System.gc();	// between benchmarks only, never inside a timed part
+	}
+
+	/*
+	 * Takes in the type name, the items and the lookups. Runs every benchmark on every collection.
+	 */
+	<T extends Comparable<T>> void executeType(String type, ArrayList<T> values, ArrayList<T> strikes) {
+		List<T> removes = values.subList(0, values.size() / 2);
+		List<T> smallValues = values.subList(0, Math.min(values.size(), LINKED_LIST_SIZE));
+		List<T> smallStrikes = strikes.subList(0, Math.min(strikes.size(), LINKED_LIST_SIZE));
+		List<T> smallRemoves = smallValues.subList(0, smallValues.size() / 2);
+
+		List<String> names = Arrays.asList("SkipListSet", "TreeSet", "ConcurrentSkipListSet");
+		List<Supplier<Collection<T>>> factories = Arrays.asList(
+				() -> new SkipListSet<T>(new GeometricLevelGenerator(SEED)),
+				() -> new TreeSet<T>(),
+				() -> new ConcurrentSkipListSet<T>());
+
+		for (int i = 0; i < names.size(); i++) {
+			report(type, names.get(i), "add", values.size(), addTrial(values, factories.get(i)));
+			report(type, names.get(i), "contains", values.size(), containsTrial(values, strikes, factories.get(i)));
+			report(type, names.get(i), "remove", values.size(), removeTrial(values, removes, factories.get(i)));
+			report(type, names.get(i), "iterate", values.size(), iterateTrial(values, factories.get(i)));
+		}
+
+		report(type, "SkipListSet", "reBalance", values.size(), reBalanceTrial(values));
+
+		Supplier<Collection<T>> linkedList = () -> new LinkedList<T>();
+		report(type, "LinkedList", "add", smallValues.size(), addTrial(smallValues, linkedList));
+		report(type, "LinkedList", "contains", smallValues.size(), containsTrial(smallValues, smallStrikes, linkedList));
+		report(type, "LinkedList", "remove", smallValues.size(), removeTrial(smallValues, smallRemoves, linkedList));
+		report(type, "LinkedList", "iterate", smallValues.size(), iterateTrial(smallValues, linkedList));
+	}
+
+	private static <T> ArrayList<T> strikesFrom(Random random, List<T> values, int howMany) {
+		ArrayList<T> strikes = new ArrayList<T>(howMany);
+
+		for (int i = 0; i < howMany; i++) {
+			strikes.add(values.get(random.nextInt(values.size())));
+		}
+
+		return strikes;
+	}
+
+	public static void main(String args[]) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int warmups = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		SkipListBenchmark benchmark = new SkipListBenchmark(warmups, iterations);
+		Random random = new Random(SEED);
+
+		ArrayList<Integer> ints = new ArrayList<Integer>(size);
+		ArrayList<Double> doubles = new ArrayList<Double>(size);
+		ArrayList<String> strings = new ArrayList<String>(size);
+		byte[] buf = new byte[16];
+
+		for (int i = 0; i < size; i++) {
+			ints.add(random.nextInt());
+			doubles.add(random.nextDouble());
+
+			for (int j = 0; j < buf.length; j++) {
+				buf[j] = (byte) (random.nextInt(94) + 32);
+			}
+
+			strings.add(new String(buf));
+		}
+
+		System.out.printf("%,d items, %d warmup and %d measured iterations per benchmark\n\n", size, warmups, iterations);
+		System.out.printf("%-8s %-22s %-10s %10s %12s %10s %10s %10s %10s\n",
+				"type", "collection", "benchmark", "size", "ns/op", "B/op", "p50 ns", "p99 ns", "p99.9 ns");
+
+		benchmark.executeType("Integer", ints, strikesFrom(random, ints, size));
+		benchmark.executeType("Double", doubles, strikesFrom(random, doubles, size));
+		benchmark.executeType("String", strings, strikesFrom(random, strings, size));
+	}
+}
@@ -0,0 +1,36 @@
+
+/*
+ * Turns the items of a SkipListSet into bytes and back for SkipListSet.writeTo and readFrom.
+ * Items are written in the set's order, and each call gets the item written just before,
+ * so a codec can store the difference from it (a delta for numbers, the shared prefix
+ * for strings) instead of the whole item.
+ *
+ * See SkipListCodecs for codecs for Integer, Long, Double and String.
+ *
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/*
+ * interface for the item codecs, a name plus one method each way
+ */
+public interface SkipListCodec<T> {
+
+	/*
+	 * Takes no input. Returns a name for the format, stored in the snapshot header so a
+	 * snapshot can't be read back with a different codec.
+	 */
+	String name();
+
+	/*
+	 * Takes in the item written before (null for the first one), the item and the stream. Writes the item.
+	 */
+	void write(T previous, T item, DataOutput out) throws IOException;
+
+	/*
+	 * Takes in the item read before (null for the first one) and the stream. Reads and returns the next item.
+	 */
+	T read(T previous, DataInput in) throws IOException;
+}
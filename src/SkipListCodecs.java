@@ -0,0 +1,211 @@
+
+/*
+ * The codecs that come with the skiplist (see SkipListCodec):
+ *
+ *   INTEGER, LONG  difference from the item before, zigzag encoded so a negative
+ *                  difference (a reversed comparator) stays small, as a varint:
+ *                  7 bits per byte, so keys close together take 1 or 2 bytes
+ *   DOUBLE         the raw 8 byte IEEE value, differences of doubles don't shrink
+ *   STRING         the number of leading chars shared with the string before, then
+ *                  the rest as UTF-8, so sorted strings with common prefixes take
+ *                  little more than what is new in each
+ *
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * external class, the built in codecs plus the varint helpers they share
+ */
+public final class SkipListCodecs {
+	public static final SkipListCodec<Integer> INTEGER = new IntegerCodec();
+	public static final SkipListCodec<Long> LONG = new LongCodec();
+	public static final SkipListCodec<Double> DOUBLE = new DoubleCodec();
+	public static final SkipListCodec<String> STRING = new StringCodec();
+
+	static final int READ_CHUNK = 8192;	/* most bytes a read allocates ahead of what the stream has delivered */
+
+	private SkipListCodecs() {}
+
+	/*
+	 * Integers as zigzag varint deltas. The difference is taken as a long so it can't overflow.
+	 */
+	private static class IntegerCodec implements SkipListCodec<Integer> {
+		@Override
+		public String name() {
+			return "int-delta";
+		}
+
+		@Override
+		public void write(Integer previous, Integer item, DataOutput out) throws IOException {
+			writeVarLong(zigzag((long) item - (previous == null ? 0 : previous)), out);
+		}
+
+		@Override
+		public Integer read(Integer previous, DataInput in) throws IOException {
+			return (int) ((previous == null ? 0 : previous) + unzigzag(readVarLong(in)));
+		}
+	}
+
+	/*
+	 * Longs as zigzag varint deltas. The difference wraps around for keys more than
+	 * Long.MAX_VALUE apart, and adding it back wraps the same way.
+	 */
+	private static class LongCodec implements SkipListCodec<Long> {
+		@Override
+		public String name() {
+			return "long-delta";
+		}
+
+		@Override
+		public void write(Long previous, Long item, DataOutput out) throws IOException {
+			writeVarLong(zigzag(item - (previous == null ? 0 : previous)), out);
+		}
+
+		@Override
+		public Long read(Long previous, DataInput in) throws IOException {
+			return (previous == null ? 0 : previous) + unzigzag(readVarLong(in));
+		}
+	}
+
+	/*
+	 * Doubles as their raw bits.
+	 */
+	private static class DoubleCodec implements SkipListCodec<Double> {
+		@Override
+		public String name() {
+			return "double-raw";
+		}
+
+		@Override
+		public void write(Double previous, Double item, DataOutput out) throws IOException {
+			out.writeDouble(item);
+		}
+
+		@Override
+		public Double read(Double previous, DataInput in) throws IOException {
+			return in.readDouble();
+		}
+	}
+
+	/*
+	 * Strings as the length of the prefix shared with the string before, then the rest as UTF-8.
+	 * The shared prefix never ends between the two halves of a surrogate pair, so the rest is always valid text.
+	 */
+	private static class StringCodec implements SkipListCodec<String> {
+		@Override
+		public String name() {
+			return "string-prefix";
+		}
+
+		@Override
+		public void write(String previous, String item, DataOutput out) throws IOException {
+			int shared = 0;
+
+			if (previous != null) {
+				int limit = Math.min(previous.length(), item.length());
+
+				while (shared < limit && previous.charAt(shared) == item.charAt(shared)) {
+					shared++;
+				}
+
+				if (shared > 0 && Character.isHighSurrogate(item.charAt(shared - 1))) {
+					shared--;
+				}
+			}
+
+			byte[] rest = item.substring(shared).getBytes(StandardCharsets.UTF_8);
+
+			writeVarLong(shared, out);
+			writeVarLong(rest.length, out);
+			out.write(rest);
+		}
+
+		@Override
+		public String read(String previous, DataInput in) throws IOException {
+			int shared = (int) readVarLong(in);
+			int length = (int) readVarLong(in);
+
+			if (shared < 0 || length < 0 || shared > (previous == null ? 0 : previous.length())) {
+				throw new IOException("corrupt string entry");
+			}
+
+			byte[] rest = readBytes(length, in);
+
+			String suffix = new String(rest, StandardCharsets.UTF_8);
+			return shared == 0 ? suffix : previous.substring(0, shared).concat(suffix);
+		}
+	}
+
+	/*
+	 * Takes in a length read from the stream and the stream. Reads that many bytes, growing the
+	 * array as they arrive instead of trusting the length up front, so a corrupt length fails
+	 * with an EOFException once the stream runs out rather than allocating up to 2GB first.
+	 */
+	static byte[] readBytes(int length, DataInput in) throws IOException {
+		byte[] bytes = new byte[Math.min(length, READ_CHUNK)];
+		int filled = 0;
+
+		while (filled < length) {
+			if (filled == bytes.length) {
+				bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+			}
+
+			in.readFully(bytes, filled, bytes.length - filled);
+			filled = bytes.length;
+		}
+
+		return bytes;
+	}
+
+	/*
+	 * Takes in a value and a stream. Writes the value 7 bits at a time, low bits first,
+	 * with the top bit of each byte set while more bytes follow. 1 to 10 bytes.
+	 */
+	public static void writeVarLong(long value, DataOutput out) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte((int) value);
+	}
+
+	/*
+	 * Takes in a stream. Reads a value written by writeVarLong.
+	 * Throws an IOException if it runs past 10 bytes.
+	 */
+	public static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("varint longer than 10 bytes");
+	}
+
+	/*
+	 * Takes in a signed value. Returns it with the sign moved to the low bit
+	 * (0, -1, 1, -2 become 0, 1, 2, 3) so small negative numbers stay small.
+	 */
+	static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/*
+	 * Takes in a zigzag encoded value. Returns the signed value.
+	 */
+	static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
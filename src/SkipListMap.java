@@ -0,0 +1,1276 @@
+
+/*
+ * This is a key/value version of the custom skiplistset.
+ * It uses the same nodes and towers as SkipListSet, but each node also has
+ * a slot for a value, so a sorted index and the data it points at can live
+ * in one structure instead of a SkipListSet next to a HashMap.
+ * put, get, remove and computeIfAbsent each do a single descent.
+ *
+ * It is a NavigableMap: lower/floor/ceiling/higher entries and keys, first/last,
+ * and poll, plus the live view maps (subMap, headMap, tailMap, descendingMap) and
+ * navigable key sets, which work on the map in place the way SkipListSet's range views do.
+ *
+ */
+
+import java.util.*;
+import java.util.function.Function;
+
+/*
+ * external class, contains the skiplistmap methods as well as an internal iterator and node type class
+ */
+public class SkipListMap<K extends Comparable<K>, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+	static final int DEFAULT_HEIGHT_CEILING = 32;
+	int MAX_HEIGHT = 1;	/* number of levels currently in use, grows with log2(size) */
+	final int heightCeiling;	/* levels preallocated in the head, MAX_HEIGHT never goes past it */
+	private final LevelGenerator levelGenerator;	/* picks the height of each new node */
+	private MapNode<K, V> head;
+	private MapNode<K, V> tail;	/* last node on the base level, the head when the map is empty */
+	private final MapNode<K, V>[] update;	/* search path reused by put and remove, one slot per level */
+	int size;	/*number of entries in the skip list (base level) */
+	int modCount;	/* bumped by every put of a new key, remove and clear */
+	private int searchCount;	/* bumped by every descent that refills the update buffer */
+
+	/*
+	 * nodes for the skip list map.
+	 *
+	 * same as the SkipListSet node with an inline value slot. The node is its own
+	 * Map.Entry, so iterating entries never allocates and setValue writes straight into it.
+	 */
+	private static class MapNode<K, V> implements Map.Entry<K, V> {
+		private final K key;
+		private V value;
+		private final MapNode<K, V>[] next;
+		private MapNode<K, V> prev;
+
+		public MapNode(K key, V value, int height) {
+			this.key = key;
+			this.value = value;
+			next = newArray(height);
+		}
+
+		/*
+		 * Takes in a length. Returns an empty node array of that length.
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		static <K, V> MapNode<K, V>[] newArray(int length) {
+			return new MapNode[length];
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			return value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			V old = this.value;
+			this.value = value;
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(value);
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + value;
+		}
+	}
+
+	/*
+	 * Iterates over the entries at the base level in key order.
+	 * Remove is supported and goes through the map's remove.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+		private MapNode<K, V> currentNode;
+		private MapNode<K, V> lastReturned;
+
+		public EntryIterator() {
+			currentNode = head.next[0];
+		}
+
+		@Override
+		public boolean hasNext() {
+			return currentNode != null;
+		}
+
+		@Override
+		public Map.Entry<K, V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			lastReturned = currentNode;
+			currentNode = currentNode.next[0];
+			return lastReturned;
+		}
+
+		@Override
+		public void remove() {
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+
+			SkipListMap.this.remove(lastReturned.key);
+			lastReturned = null;
+		}
+	}
+
+	/*
+	 * A live view of the entries between two bounds, in key order or reversed, returned by
+	 * subMap, headMap, tailMap and descendingMap. Nothing is copied: every call goes to the
+	 * map itself, so changes show through both ways. Finding where the range starts or ends
+	 * is one descent from the head, then iteration follows the base level (the back links
+	 * when reversed) until it leaves the range, so a scan of k entries costs O(log n + k).
+	 * The bounds are always kept in key order, a null bound means that side is open, and
+	 * descending only flips which end the view calls first.
+	 */
+	private class SubMap extends AbstractMap<K, V> implements NavigableMap<K, V> {
+		private final K lo;
+		private final boolean loInclusive;
+		private final K hi;
+		private final boolean hiInclusive;
+		private final boolean descending;
+
+		SubMap(K lo, boolean loInclusive, K hi, boolean hiInclusive, boolean descending) {
+			this.lo = lo;
+			this.loInclusive = loInclusive;
+			this.hi = hi;
+			this.hiInclusive = hiInclusive;
+			this.descending = descending;
+		}
+
+		@Override
+		public Comparator<? super K> comparator() {
+			return descending ? Collections.reverseOrder() : null;
+		}
+
+		@Override
+		public int size() {
+			int count = 0;
+
+			for (MapNode<K, V> node = lowestNode(); node != null && !tooHigh(node.key); node = node.next[0]) {
+				count++;
+			}
+
+			return count;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return lowestNode() == null;
+		}
+
+		@Override
+		public V get(Object key) {
+			return inRangeKey(key) ? SkipListMap.this.get(key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return inRangeKey(key) && SkipListMap.this.containsKey(key);
+		}
+
+		@Override
+		public V put(K key, V value) {
+			if (key == null || !isValidType(key)) {
+				throw new NullPointerException();
+			}
+
+			if (!inRange(key)) {
+				throw new IllegalArgumentException("key out of range");
+			}
+
+			return SkipListMap.this.put(key, value);
+		}
+
+		@Override
+		public V remove(Object key) {
+			return inRangeKey(key) ? SkipListMap.this.remove(key) : null;
+		}
+
+		/*
+		 * Empties the range from the map, one remove per entry in it.
+		 */
+		@Override
+		public void clear() {
+			MapNode<K, V> node = lowestNode();
+
+			while (node != null && !tooHigh(node.key)) {
+				MapNode<K, V> next = node.next[0];
+				SkipListMap.this.remove(node.key);
+				node = next;
+			}
+		}
+
+		@Override
+		public Set<Map.Entry<K, V>> entrySet() {
+			return new AbstractSet<Map.Entry<K, V>>() {
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return new SubMapIterator();
+				}
+
+				@Override
+				public int size() {
+					return SubMap.this.size();
+				}
+
+				@Override
+				public void clear() {
+					SubMap.this.clear();
+				}
+			};
+		}
+
+		@Override
+		public NavigableSet<K> navigableKeySet() {
+			return new KeySet<>(this);
+		}
+
+		@Override
+		public Set<K> keySet() {
+			return navigableKeySet();
+		}
+
+		@Override
+		public NavigableSet<K> descendingKeySet() {
+			return new KeySet<>(descendingMap());
+		}
+
+		@Override
+		public NavigableMap<K, V> descendingMap() {
+			return new SubMap(lo, loInclusive, hi, hiInclusive, !descending);
+		}
+
+		/*
+		 * Takes in two keys in this view's order. Returns the narrower view between them.
+		 * Throws an exception if they are out of order or outside this view.
+		 */
+		@Override
+		public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+			if (descending) {
+				return newView(toKey, toInclusive, fromKey, fromInclusive);
+			}
+
+			return newView(fromKey, fromInclusive, toKey, toInclusive);
+		}
+
+		@Override
+		public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+			checkInRange(toKey, inclusive);
+			return descending ? new SubMap(toKey, inclusive, hi, hiInclusive, true) : new SubMap(lo, loInclusive, toKey, inclusive, false);
+		}
+
+		@Override
+		public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+			checkInRange(fromKey, inclusive);
+			return descending ? new SubMap(lo, loInclusive, fromKey, inclusive, true) : new SubMap(fromKey, inclusive, hi, hiInclusive, false);
+		}
+
+		@Override
+		public SortedMap<K, V> subMap(K fromKey, K toKey) {
+			return subMap(fromKey, true, toKey, false);
+		}
+
+		@Override
+		public SortedMap<K, V> headMap(K toKey) {
+			return headMap(toKey, false);
+		}
+
+		@Override
+		public SortedMap<K, V> tailMap(K fromKey) {
+			return tailMap(fromKey, true);
+		}
+
+		@Override
+		public K firstKey() {
+			return keyOrThrow(descending ? highestNode() : lowestNode());
+		}
+
+		@Override
+		public K lastKey() {
+			return keyOrThrow(descending ? lowestNode() : highestNode());
+		}
+
+		@Override
+		public Map.Entry<K, V> firstEntry() {
+			return snapshot(descending ? highestNode() : lowestNode());
+		}
+
+		@Override
+		public Map.Entry<K, V> lastEntry() {
+			return snapshot(descending ? lowestNode() : highestNode());
+		}
+
+		@Override
+		public Map.Entry<K, V> pollFirstEntry() {
+			return removeEntry(descending ? highestNode() : lowestNode());
+		}
+
+		@Override
+		public Map.Entry<K, V> pollLastEntry() {
+			return removeEntry(descending ? lowestNode() : highestNode());
+		}
+
+		@Override
+		public Map.Entry<K, V> lowerEntry(K key) {
+			return snapshot(descending ? above(key, false) : below(key, false));
+		}
+
+		@Override
+		public K lowerKey(K key) {
+			return keyOf(descending ? above(key, false) : below(key, false));
+		}
+
+		@Override
+		public Map.Entry<K, V> floorEntry(K key) {
+			return snapshot(descending ? above(key, true) : below(key, true));
+		}
+
+		@Override
+		public K floorKey(K key) {
+			return keyOf(descending ? above(key, true) : below(key, true));
+		}
+
+		@Override
+		public Map.Entry<K, V> ceilingEntry(K key) {
+			return snapshot(descending ? below(key, true) : above(key, true));
+		}
+
+		@Override
+		public K ceilingKey(K key) {
+			return keyOf(descending ? below(key, true) : above(key, true));
+		}
+
+		@Override
+		public Map.Entry<K, V> higherEntry(K key) {
+			return snapshot(descending ? below(key, false) : above(key, false));
+		}
+
+		@Override
+		public K higherKey(K key) {
+			return keyOf(descending ? below(key, false) : above(key, false));
+		}
+
+		/*
+		 * Walks the range in the view's order. Remove is supported and goes through the map's remove.
+		 */
+		private class SubMapIterator implements Iterator<Map.Entry<K, V>> {
+			private MapNode<K, V> currentNode = descending ? highestNode() : lowestNode();
+			private MapNode<K, V> lastReturned;
+
+			@Override
+			public boolean hasNext() {
+				return currentNode != null;
+			}
+
+			@Override
+			public Map.Entry<K, V> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				lastReturned = currentNode;
+
+				if (descending) {
+					currentNode = currentNode.prev;
+
+					if (currentNode == head || tooLow(currentNode.key)) {
+						currentNode = null;
+					}
+				} else {
+					currentNode = currentNode.next[0];
+
+					if (currentNode != null && tooHigh(currentNode.key)) {
+						currentNode = null;
+					}
+				}
+
+				return lastReturned;
+			}
+
+			@Override
+			public void remove() {
+				if (lastReturned == null) {
+					throw new IllegalStateException();
+				}
+
+				SkipListMap.this.remove(lastReturned.key);
+				lastReturned = null;
+			}
+		}
+
+		/*
+		 * Takes in bounds in key order. Returns a view between them, same direction as this one.
+		 */
+		private SubMap newView(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+			checkInRange(fromKey, fromInclusive);
+			checkInRange(toKey, toInclusive);
+
+			if (fromKey.compareTo(toKey) > 0) {
+				throw new IllegalArgumentException("fromKey > toKey");
+			}
+
+			return new SubMap(fromKey, fromInclusive, toKey, toInclusive, descending);
+		}
+
+		/*
+		 * Takes in a key and whether an equal key counts. Returns the first node in range not
+		 * less than it (or greater than it), or null.
+		 */
+		private MapNode<K, V> above(K key, boolean inclusive) {
+			if (tooLow(key)) {
+				return lowestNode();
+			}
+
+			MapNode<K, V> node = ceilingNode(key, inclusive);
+			return node == null || tooHigh(node.key) ? null : node;
+		}
+
+		/*
+		 * Takes in a key and whether an equal key counts. Returns the last node in range not
+		 * greater than it (or less than it), or null.
+		 */
+		private MapNode<K, V> below(K key, boolean inclusive) {
+			if (tooHigh(key)) {
+				return highestNode();
+			}
+
+			MapNode<K, V> node = floorNode(key, inclusive);
+			return node == head || tooLow(node.key) ? null : node;
+		}
+
+		/*
+		 * Returns the first node in range, or null if the range is empty.
+		 */
+		private MapNode<K, V> lowestNode() {
+			MapNode<K, V> node = lo == null ? head.next[0] : ceilingNode(lo, loInclusive);
+
+			return node == null || tooHigh(node.key) ? null : node;
+		}
+
+		/*
+		 * Returns the last node in range, or null if the range is empty.
+		 */
+		private MapNode<K, V> highestNode() {
+			MapNode<K, V> node = hi == null ? tail : floorNode(hi, hiInclusive);
+
+			return node == head || tooLow(node.key) ? null : node;
+		}
+
+		private K keyOrThrow(MapNode<K, V> node) {
+			if (node == null) {
+				throw new NoSuchElementException();
+			}
+
+			return node.key;
+		}
+
+		private Map.Entry<K, V> removeEntry(MapNode<K, V> node) {
+			if (node == null) {
+				return null;
+			}
+
+			Map.Entry<K, V> entry = snapshot(node);
+			SkipListMap.this.remove(node.key);
+			return entry;
+		}
+
+		private boolean tooLow(K key) {
+			if (lo == null) {
+				return false;
+			}
+
+			int order = key.compareTo(lo);
+			return order < 0 || (order == 0 && !loInclusive);
+		}
+
+		private boolean tooHigh(K key) {
+			if (hi == null) {
+				return false;
+			}
+
+			int order = key.compareTo(hi);
+			return order > 0 || (order == 0 && !hiInclusive);
+		}
+
+		private boolean inRange(K key) {
+			return !tooLow(key) && !tooHigh(key);
+		}
+
+		@SuppressWarnings("unchecked")
+		private boolean inRangeKey(Object key) {
+			return key != null && isValidType(key) && inRange((K) key);
+		}
+
+		/*
+		 * Throws an exception if a bound for a narrower view falls outside this one.
+		 * An exclusive bound may sit right on this view's exclusive bound.
+		 */
+		private void checkInRange(K key, boolean inclusive) {
+			if (key == null) {
+				throw new NullPointerException();
+			}
+
+			if (lo != null) {
+				int order = key.compareTo(lo);
+
+				if (order < 0 || (order == 0 && !loInclusive && inclusive)) {
+					throw new IllegalArgumentException("key out of range");
+				}
+			}
+
+			if (hi != null) {
+				int order = key.compareTo(hi);
+
+				if (order > 0 || (order == 0 && !hiInclusive && inclusive)) {
+					throw new IllegalArgumentException("key out of range");
+				}
+			}
+		}
+	}
+
+	/*
+	 * A live view of the keys of a map (this one, or any of its views), returned by
+	 * navigableKeySet, keySet and descendingKeySet. Every call is the matching key call
+	 * on the map, a range of keys is the key set of the matching view map, and removing a
+	 * key removes its entry. Adding is not supported, there would be no value to add.
+	 */
+	private static class KeySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+		private final NavigableMap<E, ?> map;
+
+		KeySet(NavigableMap<E, ?> map) {
+			this.map = map;
+		}
+
+		@Override
+		public Comparator<? super E> comparator() {
+			return map.comparator();
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return map.isEmpty();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return map.containsKey(o);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!map.containsKey(o)) {
+				return false;
+			}
+
+			map.remove(o);
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			map.clear();
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			Iterator<? extends Map.Entry<E, ?>> entries = map.entrySet().iterator();
+
+			return new Iterator<E>() {
+				@Override
+				public boolean hasNext() {
+					return entries.hasNext();
+				}
+
+				@Override
+				public E next() {
+					return entries.next().getKey();
+				}
+
+				@Override
+				public void remove() {
+					entries.remove();
+				}
+			};
+		}
+
+		@Override
+		public Iterator<E> descendingIterator() {
+			return descendingSet().iterator();
+		}
+
+		@Override
+		public NavigableSet<E> descendingSet() {
+			return new KeySet<>(map.descendingMap());
+		}
+
+		@Override
+		public E lower(E e) {
+			return map.lowerKey(e);
+		}
+
+		@Override
+		public E floor(E e) {
+			return map.floorKey(e);
+		}
+
+		@Override
+		public E ceiling(E e) {
+			return map.ceilingKey(e);
+		}
+
+		@Override
+		public E higher(E e) {
+			return map.higherKey(e);
+		}
+
+		@Override
+		public E first() {
+			return map.firstKey();
+		}
+
+		@Override
+		public E last() {
+			return map.lastKey();
+		}
+
+		@Override
+		public E pollFirst() {
+			Map.Entry<E, ?> entry = map.pollFirstEntry();
+			return entry == null ? null : entry.getKey();
+		}
+
+		@Override
+		public E pollLast() {
+			Map.Entry<E, ?> entry = map.pollLastEntry();
+			return entry == null ? null : entry.getKey();
+		}
+
+		@Override
+		public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+			return new KeySet<>(map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+		}
+
+		@Override
+		public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+			return new KeySet<>(map.headMap(toElement, inclusive));
+		}
+
+		@Override
+		public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+			return new KeySet<>(map.tailMap(fromElement, inclusive));
+		}
+
+		@Override
+		public SortedSet<E> subSet(E fromElement, E toElement) {
+			return subSet(fromElement, true, toElement, false);
+		}
+
+		@Override
+		public SortedSet<E> headSet(E toElement) {
+			return headSet(toElement, false);
+		}
+
+		@Override
+		public SortedSet<E> tailSet(E fromElement) {
+			return tailSet(fromElement, true);
+		}
+	}
+
+	/*
+	 * constructor for a new skiplist map with the default height ceiling (32) and size 0.
+	 */
+	public SkipListMap() {
+		this(DEFAULT_HEIGHT_CEILING);
+	}
+
+	/*
+	 * constructor for a new skiplist map. Takes in the most levels the list may ever use.
+	 * Throws an exception if the ceiling is less than 1.
+	 */
+	public SkipListMap(int heightCeiling) {
+		this(heightCeiling, null);
+	}
+
+	/*
+	 * constructor for a new skiplist map. Takes in the most levels the list may ever use and the
+	 * level generator that picks node heights (null for a randomly seeded GeometricLevelGenerator,
+	 * pass a seeded one for repeatable runs). Throws an exception if the ceiling is less than 1.
+	 */
+	public SkipListMap(int heightCeiling, LevelGenerator levelGenerator) {
+		if (heightCeiling < 1) {
+			throw new IllegalArgumentException("heightCeiling must be at least 1");
+		}
+
+		this.heightCeiling = heightCeiling;
+		this.levelGenerator = levelGenerator == null ? new GeometricLevelGenerator() : levelGenerator;
+		head = new MapNode<>(null, null, heightCeiling);
+		tail = head;
+		update = MapNode.newArray(heightCeiling);
+		size = 0;
+	}
+
+	/*
+	 * constructor for a new skiplist map. Takes in any map and puts all of its entries.
+	 */
+	public SkipListMap(Map<? extends K, ? extends V> m) {
+		this();
+		putAll(m);
+	}
+
+	/*
+	 * return null, keys are always in natural order.
+	 */
+	@Override
+	public Comparator<? super K> comparator() {
+		return null;
+	}
+
+	/*
+	 * Takes no input. Acts as getter for the size variable and returns that.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Takes in a key. Walks down the towers once and returns the value stored
+	 * for that key, or null if there isn't one.
+	 */
+	@Override
+	public V get(Object key) {
+		MapNode<K, V> node = findNode(key);
+		return node == null ? null : node.value;
+	}
+
+	/*
+	 * Takes in a key. Returns true if the map has an entry for it, otherwise false.
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		return findNode(key) != null;
+	}
+
+	/*
+	 * Takes in a key and a value. Throws an exception if the key is null.
+	 * Finds the key's spot in one descent; if the key is there its value is replaced
+	 * and the old one returned, otherwise a new node is linked in and null returned.
+	 */
+	@Override
+	public V put(K key, V value) {
+		MapNode<K, V> node = findPredecessors(key);
+
+		if (node != null && node.key.equals(key)) {
+			return node.setValue(value);
+		}
+
+		linkNode(key, value);
+		return null;
+	}
+
+	/*
+	 * Takes in a key and a value. Stores the value only if the key has no entry (or a null
+	 * value), in one descent. Returns the value that was there before.
+	 */
+	@Override
+	public V putIfAbsent(K key, V value) {
+		MapNode<K, V> node = findPredecessors(key);
+
+		if (node != null && node.key.equals(key)) {
+			if (node.value == null) {
+				node.value = value;
+				return null;
+			}
+
+			return node.value;
+		}
+
+		linkNode(key, value);
+		return null;
+	}
+
+	/*
+	 * Takes in a key and a function. Finds the key's spot in one descent. If it already has
+	 * a non null value, that is returned. Otherwise the function is called and a non null
+	 * result is stored right at the spot found, without searching again, unless the function
+	 * used the map in a way that reused the search path (a put over an existing key, a remove
+	 * of a missing one); then the spot is found again before linking.
+	 * Throws ConcurrentModificationException if the function added or removed entries.
+	 */
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Objects.requireNonNull(mappingFunction);
+		MapNode<K, V> node = findPredecessors(key);
+		boolean found = node != null && node.key.equals(key);
+
+		if (found && node.value != null) {
+			return node.value;
+		}
+
+		int expectedModCount = modCount;
+		int expectedSearchCount = searchCount;
+		V value = mappingFunction.apply(key);
+
+		if (expectedModCount != modCount) {
+			throw new ConcurrentModificationException();
+		}
+
+		if (value == null) {
+			return null;
+		}
+
+		if (!found && expectedSearchCount != searchCount) {
+			node = findPredecessors(key);
+			found = node != null && node.key.equals(key);
+		}
+
+		if (found) {
+			if (node.value != null) {
+				return node.value;
+			}
+
+			node.value = value;
+		} else {
+			linkNode(key, value);
+		}
+
+		return value;
+	}
+
+	/*
+	 * Takes in a key and attempts to remove its entry. Returns null if there isn't one.
+	 * Otherwise unlinks the node from every level it is on, adjusts the size
+	 * variable and returns the value it held.
+	 */
+	@Override
+	public V remove(Object key) {
+		if (key == null || !isValidType(key)) {
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		MapNode<K, V> node = findPredecessors((K) key);
+
+		if (node == null || !node.key.equals(key)) {
+			return null; // Key not found
+		}
+
+		unlinkNode(node);
+		return node.value;
+	}
+
+	/*
+	 * Takes no input. Empties the map by replacing the head with a new, blank, one.
+	 */
+	@Override
+	public void clear() {
+		head = new MapNode<>(null, null, heightCeiling);
+		tail = head;
+		Arrays.fill(update, null);
+		size = 0;
+		modCount++;
+	}
+
+	/*
+	 * Takes no input. Returns a set view of the entries in key order, backed by the map.
+	 */
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new AbstractSet<Map.Entry<K, V>>() {
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public void clear() {
+				SkipListMap.this.clear();
+			}
+		};
+	}
+
+	/*
+	 * Takes no input. Returns the first key or throws an exception if the map is empty.
+	 */
+	@Override
+	public K firstKey() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return head.next[0].key;
+	}
+
+	/*
+	 * Takes no input. Returns the last key or throws an exception if the map is empty.
+	 */
+	@Override
+	public K lastKey() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return tail.key;
+	}
+
+	@Override
+	public Map.Entry<K, V> firstEntry() {
+		return snapshot(head.next[0]);
+	}
+
+	@Override
+	public Map.Entry<K, V> lastEntry() {
+		return snapshot(tail);
+	}
+
+	/*
+	 * Takes no input. Removes and returns the first entry, or returns null if the map is empty.
+	 */
+	@Override
+	public Map.Entry<K, V> pollFirstEntry() {
+		if (size == 0) {
+			return null;
+		}
+
+		Map.Entry<K, V> entry = snapshot(head.next[0]);
+		remove(entry.getKey());
+		return entry;
+	}
+
+	/*
+	 * Takes no input. Removes and returns the last entry, or returns null if the map is empty.
+	 */
+	@Override
+	public Map.Entry<K, V> pollLastEntry() {
+		if (size == 0) {
+			return null;
+		}
+
+		Map.Entry<K, V> entry = snapshot(tail);
+		remove(entry.getKey());
+		return entry;
+	}
+
+	@Override
+	public Map.Entry<K, V> lowerEntry(K key) {
+		return snapshot(floorNode(key, false));
+	}
+
+	@Override
+	public K lowerKey(K key) {
+		return keyOf(floorNode(key, false));
+	}
+
+	@Override
+	public Map.Entry<K, V> floorEntry(K key) {
+		return snapshot(floorNode(key, true));
+	}
+
+	@Override
+	public K floorKey(K key) {
+		return keyOf(floorNode(key, true));
+	}
+
+	@Override
+	public Map.Entry<K, V> ceilingEntry(K key) {
+		return snapshot(ceilingNode(key, true));
+	}
+
+	@Override
+	public K ceilingKey(K key) {
+		return keyOf(ceilingNode(key, true));
+	}
+
+	@Override
+	public Map.Entry<K, V> higherEntry(K key) {
+		return snapshot(ceilingNode(key, false));
+	}
+
+	@Override
+	public K higherKey(K key) {
+		return keyOf(ceilingNode(key, false));
+	}
+
+	/*
+	 * Takes no input. Returns a live view of the map in reverse key order (see SubMap).
+	 */
+	@Override
+	public NavigableMap<K, V> descendingMap() {
+		return new SubMap(null, false, null, false, true);
+	}
+
+	/*
+	 * Takes no input. Returns a live view of the keys in order, backed by the map (see KeySet).
+	 */
+	@Override
+	public NavigableSet<K> navigableKeySet() {
+		return new KeySet<>(this);
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return navigableKeySet();
+	}
+
+	/*
+	 * Takes no input. Returns a live view of the keys in reverse order.
+	 */
+	@Override
+	public NavigableSet<K> descendingKeySet() {
+		return new KeySet<>(descendingMap());
+	}
+
+	/*
+	 * Takes in two keys and whether each is included. Returns a live view of the entries between
+	 * them (see SubMap). Throws an exception if a key is null or fromKey is greater than toKey.
+	 */
+	@Override
+	public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+		if (fromKey.compareTo(Objects.requireNonNull(toKey)) > 0) {
+			throw new IllegalArgumentException("fromKey > toKey");
+		}
+
+		return new SubMap(fromKey, fromInclusive, toKey, toInclusive, false);
+	}
+
+	/*
+	 * Takes in a key and whether it is included. Returns a live view of the entries below it.
+	 */
+	@Override
+	public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+		return new SubMap(null, false, Objects.requireNonNull(toKey), inclusive, false);
+	}
+
+	/*
+	 * Takes in a key and whether it is included. Returns a live view of the entries above it.
+	 */
+	@Override
+	public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+		return new SubMap(Objects.requireNonNull(fromKey), inclusive, null, false, false);
+	}
+
+	@Override
+	public SortedMap<K, V> subMap(K fromKey, K toKey) {
+		return subMap(fromKey, true, toKey, false);
+	}
+
+	@Override
+	public SortedMap<K, V> headMap(K toKey) {
+		return headMap(toKey, false);
+	}
+
+	@Override
+	public SortedMap<K, V> tailMap(K fromKey) {
+		return tailMap(fromKey, true);
+	}
+
+	/*
+	 * Takes in a key. Walks down the towers and returns the node holding it,
+	 * or null if there isn't one. Does not touch the update buffer.
+	 */
+	@SuppressWarnings("unchecked")
+	private MapNode<K, V> findNode(Object o) {
+		if (o == null || !isValidType(o)) {
+			return null;
+		}
+
+		K key = (K) o;
+		MapNode<K, V> node = head;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && node.next[i].key.compareTo(key) < 0) {
+				node = node.next[i];
+			}
+		}
+
+		node = node.next[0];
+		return node != null && node.key.equals(key) ? node : null;
+	}
+
+	/*
+	 * Takes in a key. Throws an exception if it is null. Walks down the towers filling
+	 * the update buffer with the key's predecessor on every level and returns the first
+	 * node not less than the key (or null), so the caller can update or link in place.
+	 */
+	private MapNode<K, V> findPredecessors(K key) {
+		if (key == null || !isValidType(key)) {
+			throw new NullPointerException();
+		}
+
+		MapNode<K, V> node = head;
+		searchCount++;
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && node.next[i].key.compareTo(key) < 0) {
+				node = node.next[i];
+			}
+
+			update[i] = node;
+		}
+
+		return node.next[0];
+	}
+
+	/*
+	 * Takes in a key and value whose predecessors are in the update buffer. Links in a
+	 * node with a random height, adjusts the size variable and raises the height with an
+	 * integer binary log once the size passes the next power of two.
+	 */
+	private void linkNode(K key, V value) {
+		int height = randomHeight();
+		MapNode<K, V> newNode = new MapNode<>(key, value, height);
+
+		for (int i = 0; i < height; i++) {
+			newNode.next[i] = update[i].next[i];
+			update[i].next[i] = newNode;
+		}
+
+		newNode.prev = update[0];
+
+		if (newNode.next[0] != null) {
+			newNode.next[0].prev = newNode;
+		} else {
+			tail = newNode;
+		}
+
+		size++;
+		modCount++;
+
+		int level = levelFor(size);
+
+		if (level > MAX_HEIGHT) {
+			MAX_HEIGHT = level;
+		}
+	}
+
+	/*
+	 * Takes in a node whose predecessors are in the update buffer. Unlinks it from
+	 * every level it is on and adjusts the size variable.
+	 */
+	private void unlinkNode(MapNode<K, V> node) {
+		for (int i = 0; i < MAX_HEIGHT; i++) {
+			if (update[i].next[i] != node) {
+				break;
+			}
+
+			update[i].next[i] = node.next[i];
+		}
+
+		if (node.next[0] != null) {
+			node.next[0].prev = node.prev;
+		} else {
+			tail = node.prev;
+		}
+
+		size--;
+		modCount++;
+	}
+
+	/*
+	 * Takes in a key and whether an equal key counts. Returns the first node not less
+	 * than the key (inclusive) or greater than it (not inclusive), or null.
+	 */
+	private MapNode<K, V> ceilingNode(K key, boolean inclusive) {
+		Objects.requireNonNull(key);
+		MapNode<K, V> node = head;
+		int stop = inclusive ? 0 : 1;	/* step forward while compareTo is below this */
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && node.next[i].key.compareTo(key) < stop) {
+				node = node.next[i];
+			}
+		}
+
+		return node.next[0];
+	}
+
+	/*
+	 * Takes in a key and whether an equal key counts. Returns the last node not greater
+	 * than the key (inclusive) or less than it (not inclusive), or the head.
+	 */
+	private MapNode<K, V> floorNode(K key, boolean inclusive) {
+		Objects.requireNonNull(key);
+		MapNode<K, V> node = head;
+		int stop = inclusive ? 1 : 0;	/* step forward while compareTo is below this */
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next[i] != null && node.next[i].key.compareTo(key) < stop) {
+				node = node.next[i];
+			}
+		}
+
+		return node;
+	}
+
+	/*
+	 * Takes in a node. Returns an immutable copy of its entry, or null for the head or a missing node.
+	 */
+	private Map.Entry<K, V> snapshot(MapNode<K, V> node) {
+		return node == null || node == head ? null : new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+	}
+
+	/*
+	 * Takes in a node. Returns its key, or null for the head or a missing node.
+	 */
+	private K keyOf(MapNode<K, V> node) {
+		return node == null || node == head ? null : node.key;
+	}
+
+	/*
+	 * Takes no input. Asks the level generator for a height between 1
+	 * and the current list height.
+	 */
+	private int randomHeight() {
+		return levelGenerator.nextHeight(MAX_HEIGHT);
+	}
+
+	/*
+	 * Takes in an item count. Returns ceil(log2(count + 1)) clamped to
+	 * between 1 and the height ceiling, same as SkipListSet.
+	 */
+	private int levelFor(int count) {
+		int level = 32 - Integer.numberOfLeadingZeros(count);
+
+		return Math.max(1, Math.min(level, heightCeiling));
+	}
+
+	/*
+	 * Takes in an object.
+	 * Checks if it is a comparable type.
+	 * Returns true if so, false otherwise.
+	 */
+	private boolean isValidType(Object o) {
+		return o instanceof Comparable;
+	}
+
+}
@@ -0,0 +1,106 @@
+
+/*
+ * Construction time settings for SkipListSet: how likely a node is to reach
+ * each next level (p), the most levels the list may use, and whether the
+ * list drops levels again after mass deletes.
+ *
+ * A smaller p means fewer forward pointers per node (about 1 / (1 - p) on average,
+ * so 2 for p = 1/2 and 1.33 for p = 1/4) at the cost of a few more compares per level.
+ * The presets cover the usual trade offs, the constructor any other mix.
+ *
+ */
+
+/*
+ * external class, an immutable set of skiplist settings with a few presets
+ */
+public final class SkipListProfile {
+	/* p = 1/2, up to 32 levels, the fewest compares per search */
+	public static final SkipListProfile DEFAULT = new SkipListProfile(1, 32, true);
+
+	/* p = 1/4, up to 16 levels, about a third fewer pointers for a few more compares */
+	public static final SkipListProfile COMPACT = new SkipListProfile(2, 16, true);
+
+	/* p = 1/8, up to 11 levels, for when memory matters more than lookup latency */
+	public static final SkipListProfile MINIMAL = new SkipListProfile(3, 11, true);
+
+	final int bitsPerLevel;	/* p = 1 / 2^bitsPerLevel */
+	final int heightCeiling;	/* levels preallocated in the head, the list never uses more */
+	final boolean shrinkHeight;	/* drop unused levels once removes shrink the list enough */
+
+	/*
+	 * constructor for a profile. Takes in the bits per level (1 for p = 1/2, 2 for p = 1/4, ...),
+	 * the most levels the list may use and whether the list should give levels back after removes.
+	 * Throws an exception if the bits per level is not between 1 and 32 or the ceiling is less than 1.
+	 */
+	public SkipListProfile(int bitsPerLevel, int heightCeiling, boolean shrinkHeight) {
+		if (bitsPerLevel < 1 || bitsPerLevel > 32) {
+			throw new IllegalArgumentException("bitsPerLevel must be between 1 and 32");
+		}
+
+		if (heightCeiling < 1) {
+			throw new IllegalArgumentException("heightCeiling must be at least 1");
+		}
+
+		this.bitsPerLevel = bitsPerLevel;
+		this.heightCeiling = heightCeiling;
+		this.shrinkHeight = shrinkHeight;
+	}
+
+	/*
+	 * Takes in a seed. Returns a level generator with this profile's p, the same seed gives the same heights.
+	 */
+	public LevelGenerator newLevelGenerator(long seed) {
+		return new GeometricLevelGenerator(bitsPerLevel, seed);
+	}
+
+	/*
+	 * Takes no input. Returns a randomly seeded level generator with this profile's p.
+	 */
+	public LevelGenerator newLevelGenerator() {
+		return newLevelGenerator(java.util.concurrent.ThreadLocalRandom.current().nextLong());
+	}
+
+	/*
+	 * Takes in an item count. Returns the number of levels a list of that size should use,
+	 * ceil(log2(count + 1) / bitsPerLevel), clamped to between 1 and the height ceiling.
+	 */
+	int levelFor(int count) {
+		int level = (32 - Integer.numberOfLeadingZeros(count) + bitsPerLevel - 1) / bitsPerLevel;
+
+		return Math.max(1, Math.min(level, heightCeiling));
+	}
+
+	/*
+	 * Takes in a base level position (counting from 1). Returns the height a perfectly
+	 * balanced list gives the node there: 1 plus the trailing zero bits over the bits per level.
+	 */
+	int balancedHeight(int rank) {
+		return 1 + Integer.numberOfTrailingZeros(rank) / bitsPerLevel;
+	}
+
+	/*
+	 * Takes no input. Returns the chance of a node reaching each next level.
+	 */
+	public double probability() {
+		return 1.0 / (1L << bitsPerLevel);
+	}
+
+	/*
+	 * Takes no input. Returns the most levels a list with this profile may use.
+	 */
+	public int heightCeiling() {
+		return heightCeiling;
+	}
+
+	/*
+	 * Takes no input. Returns true if lists with this profile give levels back after removes.
+	 */
+	public boolean shrinksHeight() {
+		return shrinkHeight;
+	}
+
+	@Override
+	public String toString() {
+		return "p=1/" + (1L << bitsPerLevel) + " ceiling=" + heightCeiling + (shrinkHeight ? " shrinking" : "");
+	}
+}
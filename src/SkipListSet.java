@@ -9,30 +9,120 @@
  * 
  */
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.function.Consumer;
 
 /*
  * external class, contains skiplistset methods as well as 2 internal iterator and node type class's
  */
-public class SkipListSet<T extends Comparable<T>> implements SortedSet<T> {
-	int MAX_HEIGHT = 8;
+public class SkipListSet<T> implements NavigableSet<T> {
+	static final int DEFAULT_HEIGHT_CEILING = 32;
+	static final int SNAPSHOT_MAGIC = 0x534C5353;	/* "SLSS" */
+	static final byte SNAPSHOT_VERSION = 1;
+	static final byte SNAPSHOT_HEIGHTS = 1;	/* flag: every item is followed by its height */
+	static final int SNAPSHOT_BUFFER = 1 << 16;
+	int MAX_HEIGHT = 1;	/* number of levels currently in use, follows log(size) in base 1/p */
+	final int heightCeiling;	/* levels preallocated in the head, MAX_HEIGHT never goes past it */
 	private SkipListNode<T> head;
+	private SkipListNode<T> tail;	/* last node on the base level, the head when the list is empty */
+	private final SkipListNode<T>[] update;	/* search path reused by add and remove, one slot per level */
 	int size;	/*number of elements in the skip list (base level) */
+	int modCount;	/* bumped by every add, remove and clear that changes the set */
+	int layoutCount;	/* bumped whenever reBalance relinks the upper levels, so saved search paths go stale */
+	private final Comparator<? super T> comparator;	/* item order, null means natural order */
+	private final LevelGenerator levelGenerator;	/* picks the height of each new node */
+	private final SkipListProfile profile;	/* p, the height ceiling and whether the height shrinks */
+	private SkipListStats stats;	/* hot path stats, null (and free) unless enableStats was called */
+
+	private boolean rebalancing;	/* true while an incremental reBalance pass is part way through */
+	private int rebalanceModCount;	/* modCount when the running pass started, a change means start over */
+	private int rebalanceRank;	/* base level position of the last node the pass has placed */
+	private SkipListNode<T> rebalanceCursor;	/* next base level node the pass will place */
+	private SkipListNode<T>[] rebalanceTails;	/* last node the pass has linked on each level */
+	private SkipListNode<T>[] rebalanceFrontier;	/* first node not yet placed that the old layout links on each level */
 
 	/*
 	 * nodes for the skip list.
 	 * 
 	 * made with type E for element. does not explicitly take input but is what the input becomes, this is the item. 
-	 * uses an array to store the nodes that are *next* to it.
+	 * the nodes that are *next* to it on the two lowest levels are plain fields, and only a node
+	 * taller than 2 gets an array for the levels above. Three out of four nodes are that short, and
+	 * the bottom levels are where a search steps onto nodes that are not in cache yet, so most hops
+	 * cost one cache miss (the node) instead of two (the node, then its array).
+	 * also has a back link to the node before it on the base level so the list can be walked backwards.
+	 * static, so nodes don't carry a reference to the set.
 	 */
-	private class SkipListNode<E extends Comparable<E>> {
+	private static class SkipListNode<E> {
 		private E value;
-		private SkipListNode<E>[] next;
+		private SkipListNode<E> next0;	/* next node on the base level */
+		private SkipListNode<E> next1;	/* next node on level 1, always null for a node of height 1 */
+		private SkipListNode<E>[] upper;	/* next nodes on level 2 and up, null for a node of height 2 or less */
+		private SkipListNode<E> prev;
 
-		@SuppressWarnings("unchecked")
 		public SkipListNode(E value, int height) {
 			this.value = value;
-			next = new SkipListNode[height];
+
+			if (height > 2) {
+				upper = newArray(height - 2);
+			}
+		}
+
+		/*
+		 * Takes in a length. Returns an empty array of nodes of that length. The one place
+		 * the generic array is made, so callers need no raw type or unchecked cast.
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		static <E> SkipListNode<E>[] newArray(int length) {
+			return new SkipListNode[length];
+		}
+
+		/*
+		 * Takes in a level. Returns the next node on that level.
+		 */
+		SkipListNode<E> next(int level) {
+			return level == 0 ? next0 : level == 1 ? next1 : upper[level - 2];
+		}
+
+		/*
+		 * Takes in a level and a node. Makes that node the next one on that level.
+		 */
+		void setNext(int level, SkipListNode<E> node) {
+			if (level == 0) {
+				next0 = node;
+			} else if (level == 1) {
+				next1 = node;
+			} else {
+				upper[level - 2] = node;
+			}
+		}
+
+		/*
+		 * Takes no input. Returns how many levels the node has room for (at least 2),
+		 * which may be more than it is linked on.
+		 */
+		int height() {
+			return upper == null ? 2 : upper.length + 2;
+		}
+
+		/*
+		 * Takes in a height. Grows the upper array if the node has room for fewer levels.
+		 */
+		void ensureHeight(int height) {
+			if (height > height()) {
+				upper = upper == null ? newArray(height - 2) : Arrays.copyOf(upper, height - 2);
+			}
 		}
 	}
 
@@ -40,13 +130,25 @@ public class SkipListSet<T extends Comparable<T>> implements SortedSet<T> {
 	 * Iterates over the skiplist items. Contains next and hasNext methods.
 	 * hasNext returns a boolean if there is a next item.
 	 * next return the value of the next OR throws an exception.
-	 * Removes is present but per the project document, throws an exception.
+	 * remove unlinks the last item returned in O(1): the iterator keeps the predecessor of
+	 * that item on every level as it walks (the same way the merge walks do), so no search is needed.
+	 * A reBalance relinks the upper levels under the saved predecessors, so after one the next
+	 * remove finds them again with one descent.
+	 * Fail fast: throws ConcurrentModificationException if the set is changed other than through this iterator.
 	 */
 	private class SkipListSetIterator implements Iterator<T> {
 		private SkipListNode<T> currentNode;
+		private SkipListNode<T> lastReturned;	/* node next() handed out last, null after a remove */
+		private final SkipListNode<T>[] preds;	/* predecessors of lastReturned (or of currentNode) on every level */
+		private int expectedModCount;
+		private int expectedLayoutCount;
 
 		public SkipListSetIterator() {
-			currentNode = head.next[0];
+			currentNode = head.next(0);
+			preds = SkipListNode.newArray(heightCeiling);
+			Arrays.fill(preds, head);
+			expectedModCount = modCount;
+			expectedLayoutCount = layoutCount;
 		}
 
 		@Override
@@ -56,424 +158,2514 @@ public class SkipListSet<T extends Comparable<T>> implements SortedSet<T> {
 
 		@Override
 		public T next() {
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+
 			if (!hasNext()) {
 				throw new NoSuchElementException();
 			}
 
-			T value = currentNode.value;
-			currentNode = currentNode.next[0];
-			return value;
+			if (lastReturned != null) {
+				advanceMerge(preds, lastReturned);
+			}
+
+			lastReturned = currentNode;
+			currentNode = currentNode.next(0);
+			return lastReturned.value;
 		}
 
 		@Override
 		public void remove() {
-			throw new UnsupportedOperationException();
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+
+			if (expectedLayoutCount != layoutCount) {
+				findPredecessors(lastReturned.value, preds);
+			}
+
+			unlinkNode(preds, lastReturned);
+			lastReturned = null;
+			expectedModCount = modCount;
+			expectedLayoutCount = layoutCount;	// a shrink only drops levels above the ones preds still covers
 		}
 	}
 
 	/*
-	 * constructor for a new skiplist. Takes in and return nothing but initializes a new list
-	 * with the starting height (8) and item count (size) of 0. 
+	 * Iterates over the skiplist items while the set may be changed between calls, for long scans
+	 * that add or remove items as they go. Never throws ConcurrentModificationException: as long as
+	 * nothing changed it just follows the base level, and after a change it finds its place again
+	 * with one descent to the first item after the last one it returned. So it returns items in
+	 * order, each at most once, and shows any change made ahead of where it is.
+	 * remove goes through the set's remove.
 	 */
-	public SkipListSet() {
-		head = new SkipListNode<>(null, MAX_HEIGHT);
-		size = 0;
-	}
+	private class WeaklyConsistentIterator implements Iterator<T> {
+		private SkipListNode<T> currentNode;
+		private T lastReturned;	/* where the iterator is, kept after a remove so it can find its place again */
+		private boolean removable;	/* true between next and remove */
+		private int expectedModCount;
 
-	/*
-	 * constructor for a new skiplist. Takes in any collection as a generic and initializes the skiplist 
-	 * then adds all the values via addAdd. Returns nothing.
-	 */
-	public SkipListSet(Collection<? extends T> c) {
-		this();
-		addAll(c);
-	}
+		WeaklyConsistentIterator() {
+			currentNode = head.next(0);
+			expectedModCount = modCount;
+		}
 
-	/*
-	 * return null per project requirements
-	 */
-	@Override
-	public Comparator<? super T> comparator() {
-		return null;
+		@Override
+		public boolean hasNext() {
+			if (expectedModCount != modCount) {
+				currentNode = lastReturned == null ? head.next(0) : ceilingNode(lastReturned, false);
+				expectedModCount = modCount;
+			}
+
+			return currentNode != null;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			lastReturned = currentNode.value;
+			currentNode = currentNode.next(0);
+			removable = true;
+			return lastReturned;
+		}
+
+		@Override
+		public void remove() {
+			if (!removable) {
+				throw new IllegalStateException();
+			}
+
+			SkipListSet.this.remove(lastReturned);
+			removable = false;
+		}
 	}
 
 	/*
-	 * throws exception per project requirements.
+	 * Splits and walks the base level for streams. A spliterator covers the nodes from
+	 * current up to (not including) fence, a null fence being the end of the list.
+	 * trySplit finds the highest level with a node inside the range and cuts at the middle
+	 * one of those, so each half gets about the same share of the towers (and of the items)
+	 * after O(log n) steps, rather than the default of copying items into arrays.
+	 * Only the spliterator for the whole set is SIZED, the halves carry an estimate.
+	 * Throws ConcurrentModificationException if the set is changed after it was made.
 	 */
-	@Override
-	public SortedSet<T> subSet(T fromElement, T toElement) {
-		throw new UnsupportedOperationException();
+	private class SkipListSetSpliterator implements Spliterator<T> {
+		private SkipListNode<T> current;	/* next node to hand out, equal to fence once done */
+		private final SkipListNode<T> fence;	/* first node past the range, null for the end of the list */
+		private long est;	/* exact for the whole set, an estimate after a split */
+		private boolean sized;
+		private final int expectedModCount;
+
+		SkipListSetSpliterator(SkipListNode<T> current, SkipListNode<T> fence, long est, boolean sized) {
+			this.current = current;
+			this.fence = fence;
+			this.est = est;
+			this.sized = sized;
+			this.expectedModCount = modCount;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			if (current == fence) {
+				return false;
+			}
+
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+
+			T value = current.value;
+			current = current.next(0);
+			action.accept(value);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+			SkipListNode<T> node = current;
+			current = fence;
+
+			while (node != fence) {
+				action.accept(node.value);
+				node = node.next(0);
+			}
+
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+
+		/*
+		 * Takes no input. Cuts off the first half of the range and returns it,
+		 * or returns null if the range has no node above the base level to cut at.
+		 */
+		@Override
+		public Spliterator<T> trySplit() {
+			SkipListNode<T> mid = middleNode();
+
+			if (mid == null) {
+				return null;
+			}
+
+			SkipListSetSpliterator prefix = new SkipListSetSpliterator(current, mid, est >>> 1, false);
+			current = mid;
+			est -= est >>> 1;
+			sized = false;
+			return prefix;
+		}
+
+		/*
+		 * Takes no input. Walks down from the head to the first level that has a node strictly
+		 * after current and before the fence, counts that level's nodes inside the range
+		 * (a handful, since the level above had none) and returns the middle one, or null.
+		 */
+		private SkipListNode<T> middleNode() {
+			if (current == fence || current.next(0) == fence) {
+				return null;
+			}
+
+			T from = current.value;
+			SkipListNode<T> node = head;
+
+			for (int i = MAX_HEIGHT - 1; i >= 1; i--) {
+				while (node.next(i) != null && compare(node.next(i).value, from) <= 0) {
+					node = node.next(i);
+				}
+
+				SkipListNode<T> first = node.next(i);
+				int count = 0;
+
+				for (SkipListNode<T> n = first; n != null && beforeFence(n); n = n.next(i)) {
+					count++;
+				}
+
+				if (count > 0) {
+					SkipListNode<T> mid = first;
+
+					for (int k = count / 2; k > 0; k--) {
+						mid = mid.next(i);
+					}
+
+					return mid;
+				}
+			}
+
+			return null;
+		}
+
+		private boolean beforeFence(SkipListNode<T> node) {
+			return fence == null || compare(node.value, fence.value) < 0;
+		}
+
+		@Override
+		public long estimateSize() {
+			return current == fence ? 0 : est;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.ORDERED | Spliterator.NONNULL
+					| (sized ? Spliterator.SIZED | Spliterator.SUBSIZED : 0);
+		}
+
+		@Override
+		public Comparator<? super T> getComparator() {
+			return comparator;
+		}
 	}
 
 	/*
-	 * throws exception per project requirements.
+	 * A finger into the skiplist for lookups that land close to each other.
+	 * It remembers the search path of its last item (the node before it on every level).
+	 * The next search climbs that path only until the level whose gap contains the new
+	 * item and walks down from there, so an item d places away costs O(log d) instead
+	 * of a full descent from the top of the head.
+	 * 
+	 * add and remove through the cursor keep the path valid. Any other change to the
+	 * set (or a reBalance) makes the cursor fall back to one full descent from the head.
 	 */
-	@Override
-	public SortedSet<T> headSet(T toElement) {
-		throw new UnsupportedOperationException();
+	public class Cursor {
+		private final SkipListNode<T>[] path;
+		private int expectedModCount;
+		private int expectedLayoutCount;
+
+		private Cursor() {
+			path = SkipListNode.newArray(heightCeiling);
+			reset();
+		}
+
+		/*
+		 * Takes in an object. Returns true if it is in the skiplist, otherwise false.
+		 */
+		@SuppressWarnings("unchecked")
+		public boolean contains(Object o) {
+			if (o == null || !isValidType(o)) {
+				return false;
+			}
+
+			T element = (T) o;
+			SkipListNode<T> node = seek(element);
+			return node != null && sameItem(node.value, element);
+		}
+
+		/*
+		 * Takes a generic item input. Throws an exception if it is null or incompatible.
+		 * Returns false if the item is already there, otherwise adds it and returns true.
+		 */
+		public boolean add(T t) {
+			if (t == null || !isValidType(t)) {
+				throw new NullPointerException();
+			}
+
+			SkipListNode<T> node = seek(t);
+
+			if (node != null && sameItem(node.value, t)) {
+				return false; // Element already exists
+			}
+
+			linkNode(path, t);
+			expectedModCount = modCount;
+			return true;
+		}
+
+		/*
+		 * Takes in an object. Returns false if it is not in the skiplist,
+		 * otherwise removes it and returns true.
+		 */
+		@SuppressWarnings("unchecked")
+		public boolean remove(Object o) {
+			if (o == null || !isValidType(o)) {
+				return false;
+			}
+
+			T element = (T) o;
+			SkipListNode<T> node = seek(element);
+
+			if (node != null && sameItem(node.value, element)) {
+				unlinkNode(path, node);
+				expectedModCount = modCount;
+				return true;
+			}
+
+			return false; // Element not found
+		}
+
+		/*
+		 * Takes in an item. Moves the finger to it: climbs the saved path until the
+		 * level where the item falls between the path node and its next node, then walks
+		 * down from there, saving the new path. Returns the first node that is not less
+		 * than the item, or null if there isn't one.
+		 */
+		private SkipListNode<T> seek(T t) {
+			if (expectedModCount != modCount || expectedLayoutCount != layoutCount) {
+				reset();
+			}
+
+			int top = MAX_HEIGHT - 1;
+			int level = 0;
+
+			while (level < top && !brackets(level, t)) {
+				level++;
+			}
+
+			SkipListNode<T> node = path[level];
+
+			if (node != head && compare(node.value, t) >= 0) {
+				node = head; // the item is before the whole saved path, start from the top
+			}
+
+			for (int i = level; i >= 0; i--) {
+				while (node.next(i) != null && compare(node.next(i).value, t) < 0) {
+					node = node.next(i);
+				}
+
+				path[i] = node;
+			}
+
+			return node.next(0);
+		}
+
+		/*
+		 * Takes in a level and an item. Returns true if the item falls after the
+		 * saved path node on that level and no later than the node after it.
+		 */
+		private boolean brackets(int level, T t) {
+			SkipListNode<T> node = path[level];
+			SkipListNode<T> next = node.next(level);
+
+			return (node == head || compare(node.value, t) < 0) && (next == null || compare(next.value, t) >= 0);
+		}
+
+		/*
+		 * Takes no input. Points the saved path at the head on every level.
+		 */
+		private void reset() {
+			Arrays.fill(path, head);
+			expectedModCount = modCount;
+			expectedLayoutCount = layoutCount;
+		}
 	}
 
 	/*
-	 * throws exception per project requirements.
+	 * A live view of the items between two bounds, returned by subSet, headSet and tailSet.
+	 * Nothing is copied: every call goes to the skiplist itself, so changes show through
+	 * both ways. Finding where the range starts or ends is one descent from the head,
+	 * then iteration just follows the base level until it passes the upper bound,
+	 * so a scan of k items costs O(log n + k). A null bound means that side is open.
 	 */
-	@Override
-	public SortedSet<T> tailSet(T fromElement) {
-		throw new UnsupportedOperationException();
+	private class SubSet extends AbstractSet<T> implements NavigableSet<T> {
+		private final T lo;
+		private final boolean loInclusive;
+		private final T hi;
+		private final boolean hiInclusive;
+
+		SubSet(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+			this.lo = lo;
+			this.loInclusive = loInclusive;
+			this.hi = hi;
+			this.hiInclusive = hiInclusive;
+		}
+
+		/*
+		 * Takes no input. Returns the skiplist this is a view of.
+		 */
+		SkipListSet<T> owner() {
+			return SkipListSet.this;
+		}
+
+		/*
+		 * Iterates over the view by following the base level from the first node
+		 * in range until a node is past the upper bound. remove goes through the skiplist.
+		 * Fail fast like the skiplist's own iterator.
+		 */
+		private class SubSetIterator implements Iterator<T> {
+			private SkipListNode<T> currentNode;
+			private T lastReturned;
+			private int expectedModCount;
+
+			SubSetIterator() {
+				currentNode = lowestNode();
+				expectedModCount = modCount;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return currentNode != null;
+			}
+
+			@Override
+			public T next() {
+				if (expectedModCount != modCount) {
+					throw new ConcurrentModificationException();
+				}
+
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				lastReturned = currentNode.value;
+				currentNode = currentNode.next(0);
+
+				if (currentNode != null && tooHigh(currentNode.value)) {
+					currentNode = null;
+				}
+
+				return lastReturned;
+			}
+
+			@Override
+			public void remove() {
+				if (lastReturned == null) {
+					throw new IllegalStateException();
+				}
+
+				if (expectedModCount != modCount) {
+					throw new ConcurrentModificationException();
+				}
+
+				SkipListSet.this.remove(lastReturned);
+				lastReturned = null;
+				expectedModCount = modCount;
+			}
+		}
+
+		@Override
+		public Comparator<? super T> comparator() {
+			return comparator;
+		}
+
+		@Override
+		public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+			if (compare(fromElement, toElement) > 0) {
+				throw new IllegalArgumentException("fromElement > toElement");
+			}
+
+			checkInRange(fromElement, fromInclusive);
+			checkInRange(toElement, toInclusive);
+			return new SubSet(fromElement, fromInclusive, toElement, toInclusive);
+		}
+
+		@Override
+		public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+			checkInRange(toElement, inclusive);
+			return new SubSet(lo, loInclusive, toElement, inclusive);
+		}
+
+		@Override
+		public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+			checkInRange(fromElement, inclusive);
+			return new SubSet(fromElement, inclusive, hi, hiInclusive);
+		}
+
+		@Override
+		public SortedSet<T> subSet(T fromElement, T toElement) {
+			return subSet(fromElement, true, toElement, false);
+		}
+
+		@Override
+		public SortedSet<T> headSet(T toElement) {
+			return headSet(toElement, false);
+		}
+
+		@Override
+		public SortedSet<T> tailSet(T fromElement) {
+			return tailSet(fromElement, true);
+		}
+
+		@Override
+		public T lower(T e) {
+			return tooHigh(e) ? valueOf(highestNode()) : inRangeValue(floorNode(e, false));
+		}
+
+		@Override
+		public T floor(T e) {
+			return tooHigh(e) ? valueOf(highestNode()) : inRangeValue(floorNode(e, true));
+		}
+
+		@Override
+		public T ceiling(T e) {
+			return tooLow(e) ? valueOf(lowestNode()) : inRangeValue(ceilingNode(e, true));
+		}
+
+		@Override
+		public T higher(T e) {
+			return tooLow(e) ? valueOf(lowestNode()) : inRangeValue(ceilingNode(e, false));
+		}
+
+		@Override
+		public T pollFirst() {
+			SkipListNode<T> node = lowestNode();
+
+			if (node == null) {
+				return null;
+			}
+
+			SkipListSet.this.remove(node.value);
+			return node.value;
+		}
+
+		@Override
+		public T pollLast() {
+			SkipListNode<T> node = highestNode();
+
+			if (node == null) {
+				return null;
+			}
+
+			SkipListSet.this.remove(node.value);
+			return node.value;
+		}
+
+		/*
+		 * Returns the range in reverse order, a view of this view (see DescendingSet).
+		 */
+		@Override
+		public NavigableSet<T> descendingSet() {
+			return new DescendingSet(this);
+		}
+
+		/*
+		 * Walks the base level back links from the last node in range until it is below the range.
+		 */
+		@Override
+		public Iterator<T> descendingIterator() {
+			return new DescendingIterator(highestNode(), this);
+		}
+
+		/*
+		 * Returns the node's item if it is a real node inside the range, otherwise null.
+		 */
+		private T inRangeValue(SkipListNode<T> node) {
+			return node == null || node == head || !inRange(node.value) ? null : node.value;
+		}
+
+		@Override
+		public T first() {
+			SkipListNode<T> node = lowestNode();
+
+			if (node == null) {
+				throw new NoSuchElementException();
+			}
+
+			return node.value;
+		}
+
+		@Override
+		public T last() {
+			SkipListNode<T> node = highestNode();
+
+			if (node == null) {
+				throw new NoSuchElementException();
+			}
+
+			return node.value;
+		}
+
+		/*
+		 * Counts the items in range by walking them, O(log n + k).
+		 */
+		@Override
+		public int size() {
+			int count = 0;
+
+			for (SkipListNode<T> node = lowestNode(); node != null && !tooHigh(node.value); node = node.next(0)) {
+				count++;
+			}
+
+			return count;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return lowestNode() == null;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean contains(Object o) {
+			return o != null && isValidType(o) && inRange((T) o) && SkipListSet.this.contains(o);
+		}
+
+		@Override
+		public boolean add(T t) {
+			if (t == null || !isValidType(t)) {
+				throw new NullPointerException();
+			}
+
+			if (!inRange(t)) {
+				throw new IllegalArgumentException("key out of range");
+			}
+
+			return SkipListSet.this.add(t);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean remove(Object o) {
+			return o != null && isValidType(o) && inRange((T) o) && SkipListSet.this.remove(o);
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return new SubSetIterator();
+		}
+
+		/*
+		 * Empties the range from the skiplist. Finds the predecessors of the lower
+		 * bound once, then keeps unlinking the node after them until it is past the
+		 * upper bound; the predecessors stay correct the whole time.
+		 */
+		@Override
+		public void clear() {
+			SkipListNode<T>[] preds = update;
+			SkipListNode<T> node = head;
+
+			for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+				while (node.next(i) != null && tooLow(node.next(i).value)) {
+					node = node.next(i);
+				}
+
+				preds[i] = node;
+			}
+
+			node = preds[0].next(0);
+
+			while (node != null && !tooHigh(node.value)) {
+				unlinkNode(preds, node);
+				node = preds[0].next(0);
+			}
+		}
+
+		/*
+		 * Returns the first node in range, or null if the range is empty.
+		 */
+		private SkipListNode<T> lowestNode() {
+			SkipListNode<T> node = lo == null ? head.next(0) : ceilingNode(lo, loInclusive);
+
+			return node == null || tooHigh(node.value) ? null : node;
+		}
+
+		/*
+		 * Returns the last node in range, or null if the range is empty.
+		 */
+		private SkipListNode<T> highestNode() {
+			SkipListNode<T> node = hi == null ? tail : floorNode(hi, hiInclusive);
+
+			return node == head || tooLow(node.value) ? null : node;
+		}
+
+		private boolean tooLow(T t) {
+			if (lo == null) {
+				return false;
+			}
+
+			int order = compare(t, lo);
+			return order < 0 || (order == 0 && !loInclusive);
+		}
+
+		private boolean tooHigh(T t) {
+			if (hi == null) {
+				return false;
+			}
+
+			int order = compare(t, hi);
+			return order > 0 || (order == 0 && !hiInclusive);
+		}
+
+		private boolean inRange(T t) {
+			return !tooLow(t) && !tooHigh(t);
+		}
+
+		/*
+		 * Throws an exception if a bound for a narrower view falls outside this one.
+		 * An exclusive bound may sit right on this view's exclusive bound.
+		 */
+		private void checkInRange(T t, boolean inclusive) {
+			if (t == null) {
+				throw new NullPointerException();
+			}
+
+			if (lo != null) {
+				int order = compare(t, lo);
+
+				if (order < 0 || (order == 0 && !loInclusive && inclusive)) {
+					throw new IllegalArgumentException("key out of range");
+				}
+			}
+
+			if (hi != null) {
+				int order = compare(t, hi);
+
+				if (order > 0 || (order == 0 && !hiInclusive && inclusive)) {
+					throw new IllegalArgumentException("key out of range");
+				}
+			}
+		}
+	}
+
+	/*
+	 * Walks the base level back links, for descendingIterator. Starts at the given node (null when
+	 * there is nothing to walk) and stops at the head, or below the range when it walks a range view.
+	 * Fail fast like the forward iterators, remove takes the last item returned out of the skiplist.
+	 */
+	private class DescendingIterator implements Iterator<T> {
+		private SkipListNode<T> currentNode;
+		private final SubSet range;	/* the view being walked, null for the whole skiplist */
+		private T lastReturned;	/* item next() handed out last, null after a remove */
+		private int expectedModCount;
+
+		DescendingIterator(SkipListNode<T> start, SubSet range) {
+			currentNode = start;
+			this.range = range;
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return currentNode != null;
+		}
+
+		@Override
+		public T next() {
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			lastReturned = currentNode.value;
+			currentNode = currentNode.prev;
+
+			if (currentNode == head || (range != null && range.tooLow(currentNode.value))) {
+				currentNode = null;
+			}
+
+			return lastReturned;
+		}
+
+		@Override
+		public void remove() {
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+
+			SkipListSet.this.remove(lastReturned);
+			lastReturned = null;
+			expectedModCount = modCount;
+		}
+	}
+
+	/*
+	 * A live view of the skiplist, or of a range view, in reverse order, returned by descendingSet.
+	 * Nothing is copied and nothing is stored in reverse: every call is the mirror image call on the
+	 * view underneath (first is its last, lower is its higher, a headSet is its tailSet, and so on),
+	 * and iteration follows the base level back links. descendingSet of this view is the view
+	 * underneath again.
+	 */
+	private class DescendingSet extends AbstractSet<T> implements NavigableSet<T> {
+		private final NavigableSet<T> base;	/* the skiplist or a SubSet of it, in ascending order */
+		private final Comparator<? super T> reversed;
+
+		DescendingSet(NavigableSet<T> base) {
+			this.base = base;
+			this.reversed = Collections.reverseOrder(comparator);
+		}
+
+		/*
+		 * Takes no input. Returns the skiplist this is a view of.
+		 */
+		SkipListSet<T> owner() {
+			return SkipListSet.this;
+		}
+
+		@Override
+		public Comparator<? super T> comparator() {
+			return reversed;
+		}
+
+		@Override
+		public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+			return base.subSet(toElement, toInclusive, fromElement, fromInclusive).descendingSet();
+		}
+
+		@Override
+		public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+			return base.tailSet(toElement, inclusive).descendingSet();
+		}
+
+		@Override
+		public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+			return base.headSet(fromElement, inclusive).descendingSet();
+		}
+
+		@Override
+		public SortedSet<T> subSet(T fromElement, T toElement) {
+			return subSet(fromElement, true, toElement, false);
+		}
+
+		@Override
+		public SortedSet<T> headSet(T toElement) {
+			return headSet(toElement, false);
+		}
+
+		@Override
+		public SortedSet<T> tailSet(T fromElement) {
+			return tailSet(fromElement, true);
+		}
+
+		@Override
+		public T lower(T e) {
+			return base.higher(e);
+		}
+
+		@Override
+		public T floor(T e) {
+			return base.ceiling(e);
+		}
+
+		@Override
+		public T ceiling(T e) {
+			return base.floor(e);
+		}
+
+		@Override
+		public T higher(T e) {
+			return base.lower(e);
+		}
+
+		@Override
+		public T first() {
+			return base.last();
+		}
+
+		@Override
+		public T last() {
+			return base.first();
+		}
+
+		@Override
+		public T pollFirst() {
+			return base.pollLast();
+		}
+
+		@Override
+		public T pollLast() {
+			return base.pollFirst();
+		}
+
+		@Override
+		public NavigableSet<T> descendingSet() {
+			return base;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return base.descendingIterator();
+		}
+
+		@Override
+		public Iterator<T> descendingIterator() {
+			return base.iterator();
+		}
+
+		@Override
+		public int size() {
+			return base.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return base.isEmpty();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return base.contains(o);
+		}
+
+		@Override
+		public boolean add(T t) {
+			return base.add(t);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return base.remove(o);
+		}
+
+		@Override
+		public void clear() {
+			base.clear();
+		}
+	}
+
+	/*
+	 * Streams the items of a snapshot (see writeTo) to the bulk load one at a time, so a restore
+	 * never holds more than the item being read. Also hands the bulk load the height stored with
+	 * each item, when the snapshot has them, by standing in for the level generator.
+	 * An IOException is passed through next as an UncheckedIOException for readFrom to unwrap.
+	 */
+	private class SnapshotReader implements Iterator<T>, LevelGenerator {
+		private final DataInput in;
+		private final SkipListCodec<T> codec;
+		private final boolean withHeights;
+		private int remaining;
+		private T previous;
+		private int height;	/* stored height of the item next returned last */
+
+		SnapshotReader(DataInput in, SkipListCodec<T> codec, boolean withHeights, int count) {
+			this.in = in;
+			this.codec = codec;
+			this.withHeights = withHeights;
+			this.remaining = count;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return remaining > 0;
+		}
+
+		@Override
+		public T next() {
+			if (remaining == 0) {
+				throw new NoSuchElementException();
+			}
+
+			try {
+				previous = codec.read(previous, in);
+				height = withHeights ? in.readUnsignedByte() : 0;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			remaining--;
+			return previous;
+		}
+
+		@Override
+		public int nextHeight(int maxHeight) {
+			return Math.max(1, Math.min(height, maxHeight));
+		}
+	}
+
+	/*
+	 * constructor for a new skiplist. Takes in and return nothing but initializes a new list
+	 * with the default height ceiling (32) and item count (size) of 0. 
+	 */
+	public SkipListSet() {
+		this(DEFAULT_HEIGHT_CEILING, null);
+	}
+
+	/*
+	 * constructor for a new skiplist ordered by a comparator instead of natural order,
+	 * so items can be sorted by any key without wrapping them. A null comparator means natural order.
+	 */
+	public SkipListSet(Comparator<? super T> comparator) {
+		this(DEFAULT_HEIGHT_CEILING, comparator);
+	}
+
+	/*
+	 * constructor for a new skiplist. Takes in the most levels the list may ever use.
+	 * The head and the update buffer are allocated once at that height so adds
+	 * and removes never have to allocate anything but the new node.
+	 * Throws an exception if the ceiling is less than 1.
+	 */
+	public SkipListSet(int heightCeiling) {
+		this(heightCeiling, null);
+	}
+
+	/*
+	 * constructor for a new skiplist. Takes in the most levels the list may ever use and
+	 * the comparator to order by (null for natural order).
+	 * Throws an exception if the ceiling is less than 1.
+	 */
+	public SkipListSet(int heightCeiling, Comparator<? super T> comparator) {
+		this(heightCeiling, comparator, null);
+	}
+
+	/*
+	 * constructor for a new skiplist in natural order. Takes in the level generator that picks
+	 * node heights, e.g. a seeded GeometricLevelGenerator for repeatable runs.
+	 */
+	public SkipListSet(LevelGenerator levelGenerator) {
+		this(DEFAULT_HEIGHT_CEILING, null, levelGenerator);
+	}
+
+	/*
+	 * constructor for a new skiplist. Takes in the most levels the list may ever use, the
+	 * comparator to order by (null for natural order) and the level generator that picks node
+	 * heights (null for a randomly seeded GeometricLevelGenerator).
+	 * Throws an exception if the ceiling is less than 1.
+	 */
+	public SkipListSet(int heightCeiling, Comparator<? super T> comparator, LevelGenerator levelGenerator) {
+		this(new SkipListProfile(1, heightCeiling, true), comparator, levelGenerator);
+	}
+
+	/*
+	 * constructor for a new skiplist in natural order. Takes in a profile (see SkipListProfile)
+	 * that sets p, the most levels the list may use and whether it gives levels back after removes.
+	 */
+	public SkipListSet(SkipListProfile profile) {
+		this(profile, null, null);
+	}
+
+	/*
+	 * constructor for a new skiplist. Takes in a profile, the comparator to order by (null for
+	 * natural order) and the level generator that picks node heights (null for a randomly seeded
+	 * one with the profile's p). A generator passed in should use the same p as the profile,
+	 * e.g. profile.newLevelGenerator(seed), since the profile decides how many levels are in use.
+	 */
+	public SkipListSet(SkipListProfile profile, Comparator<? super T> comparator, LevelGenerator levelGenerator) {
+		this.profile = profile;
+		this.heightCeiling = profile.heightCeiling;
+		this.comparator = comparator;
+		this.levelGenerator = levelGenerator == null ? profile.newLevelGenerator() : levelGenerator;
+		head = new SkipListNode<>(null, heightCeiling);
+		tail = head;
+		update = SkipListNode.newArray(heightCeiling);
+		size = 0;
+	}
+
+	/*
+	 * constructor for a new skiplist. Takes in any collection as a generic and initializes the skiplist 
+	 * then bulk loads the values. Sorted input (a SortedSet, or any collection that happens to be in
+	 * ascending order) is laid out balanced in one linear pass; anything else falls back to add.
+	 * Returns nothing.
+	 */
+	public SkipListSet(Collection<? extends T> c) {
+		this();
+		bulkLoad(c);
+	}
+
+	/*
+	 * constructor for a new skiplist. Takes in a sorted set, uses the same comparator
+	 * and bulk loads its items in one linear pass.
+	 */
+	public SkipListSet(SortedSet<T> s) {
+		this(DEFAULT_HEIGHT_CEILING, s.comparator());
+		bulkLoad(s);
+	}
+
+	/*
+	 * Takes no input. Returns the comparator the set is ordered by, or null for natural order.
+	 */
+	@Override
+	public Comparator<? super T> comparator() {
+		return comparator;
+	}
+
+	/*
+	 * Takes in two items. Returns a live view of the items from fromElement (included)
+	 * up to toElement (not included). Throws an exception if either is null or
+	 * fromElement is after toElement.
+	 */
+	@Override
+	public SortedSet<T> subSet(T fromElement, T toElement) {
+		if (fromElement == null || toElement == null) {
+			throw new NullPointerException();
+		}
+
+		if (compare(fromElement, toElement) > 0) {
+			throw new IllegalArgumentException("fromElement > toElement");
+		}
+
+		return new SubSet(fromElement, true, toElement, false);
+	}
+
+	/*
+	 * Takes in two items and whether each is included. Returns a live view of the items
+	 * between them. Throws an exception if either is null or fromElement is after toElement.
+	 */
+	@Override
+	public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+		if (fromElement == null || toElement == null) {
+			throw new NullPointerException();
+		}
+
+		if (compare(fromElement, toElement) > 0) {
+			throw new IllegalArgumentException("fromElement > toElement");
+		}
+
+		return new SubSet(fromElement, fromInclusive, toElement, toInclusive);
+	}
+
+	/*
+	 * Takes in an item and whether it is included. Returns a live view of the items
+	 * before (or up to) toElement. Throws an exception if it is null.
+	 */
+	@Override
+	public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+		if (toElement == null) {
+			throw new NullPointerException();
+		}
+
+		return new SubSet(null, false, toElement, inclusive);
+	}
+
+	/*
+	 * Takes in an item and whether it is included. Returns a live view of the items
+	 * after (or from) fromElement on. Throws an exception if it is null.
+	 */
+	@Override
+	public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+		if (fromElement == null) {
+			throw new NullPointerException();
+		}
+
+		return new SubSet(fromElement, inclusive, null, false);
+	}
+
+	/*
+	 * Takes in an item. Returns a live view of the items before toElement.
+	 * Throws an exception if it is null.
+	 */
+	@Override
+	public SortedSet<T> headSet(T toElement) {
+		if (toElement == null) {
+			throw new NullPointerException();
+		}
+
+		return new SubSet(null, false, toElement, false);
+	}
+
+	/*
+	 * Takes in an item. Returns a live view of the items from fromElement (included) on.
+	 * Throws an exception if it is null.
+	 */
+	@Override
+	public SortedSet<T> tailSet(T fromElement) {
+		if (fromElement == null) {
+			throw new NullPointerException();
+		}
+
+		return new SubSet(fromElement, true, null, false);
+	}
+
+	/*
+	 * Take no input. Checks if there is at least 1 item.
+	 * If not it throws an exception; otherwise returns the first item in the skiplist. 
+	 */
+	@Override
+	public T first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		
+		return head.next(0).value;
+	}
+
+	/*
+	 * Takes no input. Checks if there is at least 1 item.
+	 * If there isn't, it throws an exception; otherwise it 
+	 * returns the item in the tail node.
+	 */
+	@Override
+	public T last() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return tail.value;
+	}
+
+	/*
+	 * Takes in an item. Returns the greatest item less than it, or null if there isn't one.
+	 */
+	@Override
+	public T lower(T e) {
+		return valueOf(floorNode(e, false));
+	}
+
+	/*
+	 * Takes in an item. Returns the greatest item less than or equal to it, or null if there isn't one.
+	 */
+	@Override
+	public T floor(T e) {
+		return valueOf(floorNode(e, true));
+	}
+
+	/*
+	 * Takes in an item. Returns the least item greater than or equal to it, or null if there isn't one.
+	 */
+	@Override
+	public T ceiling(T e) {
+		return valueOf(ceilingNode(e, true));
+	}
+
+	/*
+	 * Takes in an item. Returns the least item greater than it, or null if there isn't one.
+	 */
+	@Override
+	public T higher(T e) {
+		return valueOf(ceilingNode(e, false));
+	}
+
+	/*
+	 * Takes no input. Removes and returns the first item, or returns null if the list is empty.
+	 * The head is the first node's predecessor on every level it is on, so no search is needed.
+	 */
+	@Override
+	public T pollFirst() {
+		if (size == 0) {
+			return null;
+		}
+
+		SkipListNode<T> node = head.next(0);
+		Arrays.fill(update, 0, Math.min(node.height() + 1, MAX_HEIGHT), head);
+		unlinkNode(update, node);
+		return node.value;
+	}
+
+	/*
+	 * Takes no input. Removes and returns the last item, or returns null if the list is empty.
+	 */
+	@Override
+	public T pollLast() {
+		if (size == 0) {
+			return null;
+		}
+
+		T value = tail.value;
+		remove(value);
+		return value;
+	}
+
+	/*
+	 * Takes no input. Returns a live view of the skiplist in reverse order (see DescendingSet).
+	 */
+	@Override
+	public NavigableSet<T> descendingSet() {
+		return new DescendingSet(this);
+	}
+
+	/*
+	 * Takes no input. Returns an iterator that walks the base level back links
+	 * from the tail to the first item.
+	 */
+	@Override
+	public Iterator<T> descendingIterator() {
+		return new DescendingIterator(tail == head ? null : tail, null);
+	}
+
+	/*
+	 * Takes in a node. Returns its item, or null for the head or a missing node.
+	 */
+	private T valueOf(SkipListNode<T> node) {
+		return node == null || node == head ? null : node.value;
+	}
+
+	/*
+	 * Takes in an item and whether an equal item counts. Does one descent from the head
+	 * and returns the first node not less than the item (inclusive) or greater than it
+	 * (not inclusive), or null if there isn't one.
+	 */
+	private SkipListNode<T> ceilingNode(T t, boolean inclusive) {
+		SkipListNode<T> node = head;
+		int stop = inclusive ? 0 : 1;	/* step forward while compare is below this */
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next(i) != null && compare(node.next(i).value, t) < stop) {
+				node = node.next(i);
+			}
+		}
+
+		return node.next(0);
+	}
+
+	/*
+	 * Takes in an item and whether an equal item counts. Does one descent from the head
+	 * and returns the last node not greater than the item (inclusive) or less than it
+	 * (not inclusive), or the head if there isn't one.
+	 */
+	private SkipListNode<T> floorNode(T t, boolean inclusive) {
+		SkipListNode<T> node = head;
+		int stop = inclusive ? 1 : 0;	/* step forward while compare is below this */
+
+		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
+			while (node.next(i) != null && compare(node.next(i).value, t) < stop) {
+				node = node.next(i);
+			}
+		}
+
+		return node;
+	}
+
+	/*
+	 * Takes no input. Acts as getter for the size variable and returns that.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Takes no input. Checks if the size is 0. 
+	 * If it is, it returns boolean true, otherwise false. 
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/*
+	 * Takes in an object. Checks that the object is real and compatible 
+	 * using the isValidType method. If it is ok, it continues or otherwise returns false.
+	 * Checks if that object is found in the skiplist with one descent from the head (see findPredecessors).
+	 * If it found the item, it returns true, otherwise returns false.  
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean contains(Object o) {
+		if (o == null || !isValidType(o)) {
+			return false;
+		}
+
+		T element = (T) o;
+
+		if (stats != null) {
+			long start = System.nanoTime();
+			boolean found = containsItem(element);
+			stats.recordOp(SkipListStats.CONTAINS, System.nanoTime() - start);
+			return found;
+		}
+
+		return containsItem(element);
+	}
+
+	/*
+	 * Takes in an item of the right type. Returns true if it is in the set.
+	 */
+	private boolean containsItem(T element) {
+		SkipListNode<T> node = findPredecessors(element, update);
+		return node != null && sameItem(node.value, element);
+	}
+
+	/*
+	 * Takes no input. Returns the custom SkipListSetIterator.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new SkipListSetIterator();
+	}
+
+	/*
+	 * Takes no input. Returns an iterator that keeps going when the set is changed while it
+	 * is in use (see WeaklyConsistentIterator), for scans that write as they walk.
+	 */
+	public Iterator<T> weaklyConsistentIterator() {
+		return new WeaklyConsistentIterator();
+	}
+
+	/*
+	 * Takes no input. Returns a spliterator over the whole set that splits along the
+	 * upper levels, so parallel streams get balanced ranges.
+	 */
+	@Override
+	public Spliterator<T> spliterator() {
+		return new SkipListSetSpliterator(head.next(0), null, size, true);
+	}
+
+	/*
+	 * Takes no input. Returns a new Cursor starting at the head, for runs of
+	 * lookups, adds and removes that land close to each other.
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/*
+	 * Takes no input. Creates an array and adds the items from the skiplist
+	 * into the array. Returns the array. 
+	 */
+	@Override
+	public Object[] toArray() {
+		Object[] array = new Object[size];
+		int index = 0;
+		SkipListNode<T> node = head.next(0);
+
+		while (node != null) {
+			array[index++] = node.value;
+			node = node.next(0);
+		}
+
+		return array;
+	}
+
+	/*
+	 * Takes no input. Creates an array and adds the items from the skiplist
+	 * into the array. Returns the array. 
+	 * 
+	 * Old java method. 
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T1> T1[] toArray(T1[] a) {
+		if (a.length < size) {
+			a = Arrays.copyOf(a, size);
+		}
+
+		int index = 0;
+		SkipListNode<T> node = head.next(0);
+
+		while (node != null) {
+			a[index++] = (T1) node.value;
+			node = node.next(0);
+		}
+
+		if (a.length > size) {
+			a[size] = null;
+		}
+
+		return a;
+	}
+
+	/*
+	 * Takes a generic item input. Checks whether the type is compatible or not
+	 * and throws an exception if not. Otherwise, it finds the correct spot to add 
+	 * uses the set's update buffer to add the item and adjust the pointers around it. 
+	 * Raises the height with an integer binary log once the size passes the next
+	 * power of two and returns true once complete.
+	 */
+	@Override
+	public boolean add(T t) {
+		if (t == null || !isValidType(t)) {
+			throw new NullPointerException();
+		}
+
+		if (stats != null) {
+			long start = System.nanoTime();
+			boolean added = addItem(t);
+			stats.recordOp(SkipListStats.ADD, System.nanoTime() - start);
+			return added;
+		}
+
+		return addItem(t);
+	}
+
+	/*
+	 * Takes in an item of the right type. Adds it unless it is already there.
+	 * Returns true if it was added.
+	 */
+	private boolean addItem(T t) {
+		SkipListNode<T> node = findPredecessors(t, update);
+
+		if (node != null && sameItem(node.value, t)) {
+			return false; // Element already exists
+		}
+
+		linkNode(update, t);
+		return true;
+	}
+
+	/*
+	 * Takes in an object and attempts to remove it. Checks that the
+	 * input is not null and a compatible type. If not, returns false.
+	 * Otherwise, is searches for the item (filling the update buffer), if its not found it returns false, 
+	 * and if it is found, removes the item, adjusts the size variable,
+	 * then updates the pointers around, and returns true.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean remove(Object o) {
+		if (o == null || !isValidType(o)) {
+			return false;
+		}
+
+		T element = (T) o;
+
+		if (stats != null) {
+			long start = System.nanoTime();
+			boolean removed = removeItem(element);
+			stats.recordOp(SkipListStats.REMOVE, System.nanoTime() - start);
+			return removed;
+		}
+
+		return removeItem(element);
+	}
+
+	/*
+	 * Takes in an item of the right type. Removes it if it is there.
+	 * Returns true if it was removed.
+	 */
+	private boolean removeItem(T element) {
+		SkipListNode<T> node = findPredecessors(element, update);
+
+		if (node != null && sameItem(node.value, element)) {
+			unlinkNode(update, node);
+			return true;
+		}
+
+		return false; // Element not found
+	}
+
+	/*
+	 * Takes in the predecessors of a new item on every level and the item itself.
+	 * Makes a node with a random height, links it in after the predecessors, adjusts
+	 * the size variable and raises the height with an integer binary log once the size
+	 * passes the next power of two. Used by add and by cursors. Returns nothing.
+	 */
+	private void linkNode(SkipListNode<T>[] preds, T t) {
+		int height = randomHeight();
+
+		if (height > MAX_HEIGHT) {
+			height = MAX_HEIGHT;
+		}
+
+		SkipListNode<T> newNode = new SkipListNode<>(t, height);
+
+		for (int i = 0; i < height; i++) {
+			newNode.setNext(i, preds[i].next(i));
+			preds[i].setNext(i, newNode);
+		}
+
+		newNode.prev = preds[0];
+
+		if (newNode.next(0) != null) {
+			newNode.next(0).prev = newNode;
+		} else {
+			tail = newNode;
+		}
+
+		size++;
+		modCount++;
+
+		int level = levelFor(size);
+
+		if (level > MAX_HEIGHT) {
+			MAX_HEIGHT = level; // head already has the slot, it is just null until used
+		}
+	}
+
+	/*
+	 * Takes in the predecessors of a node on every level and the node. Unlinks the node
+	 * from every level it is on and adjusts the size variable. Used by remove and by cursors.
+	 * Returns nothing.
+	 */
+	private void unlinkNode(SkipListNode<T>[] preds, SkipListNode<T> node) {
+		for (int i = 0; i < MAX_HEIGHT; i++) {
+			if (preds[i].next(i) != node) {
+				break;
+			}
+
+			preds[i].setNext(i, node.next(i));
+		}
+
+		if (node.next(0) != null) {
+			node.next(0).prev = node.prev;
+		} else {
+			tail = node.prev;
+		}
+
+		size--;
+		modCount++;
+
+		if (profile.shrinkHeight && MAX_HEIGHT > levelFor(size) + 1) {
+			shrinkTo(levelFor(size));
+		}
+	}
+
+	/*
+	 * Takes in the new number of levels. Used once removes have left the list two or more
+	 * levels taller than its size needs, so a list that briefly held many items does not keep
+	 * searching through nearly empty top levels. Walks each level above the new height once
+	 * from the head, unlinking every node from it so none keeps a stale link, then lowers
+	 * the height. Those levels hold few nodes, so the cost is small next to the removes that
+	 * led to it. Bumps layoutCount since saved search paths go stale.
+	 */
+	private void shrinkTo(int levels) {
+		for (int i = levels; i < MAX_HEIGHT; i++) {
+			SkipListNode<T> node = head;
+
+			while (node != null) {
+				SkipListNode<T> next = node.next(i);
+				node.setNext(i, null);
+				node = next;
+			}
+		}
+
+		MAX_HEIGHT = levels;
+		layoutCount++;
+	}
+
+	/*
+	 * Takes in a collection. Checks if the skiplist contains every item 
+	 * passed in through the collection. If there are any missing, 
+	 * it returns false, otherwise it iterates over the collection and 
+	 * returns true. A collection sorted the same way is either merged against the
+	 * base level in one pass (when it is big compared to the skiplist) or searched
+	 * with a cursor, so each item is found from where the one before it was.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		if (isSameOrder(c) && isWorthMerging(c.size())) {
+			SkipListNode<T> node = head.next(0);
+
+			for (Object element : c) {
+				if (element == null || !isValidType(element)) {
+					return false;
+				}
+
+				T t = (T) element;
+
+				while (node != null && compare(node.value, t) < 0) {
+					node = node.next(0);
+				}
+
+				if (node == null || !sameItem(node.value, t)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		if (isSameOrder(c)) {
+			Cursor cursor = cursor();
+
+			for (Object element : c) {
+				if (!cursor.contains(element)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		for (Object element : c) {
+			if (!contains(element)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * Takes in a collection of items. Adds every item in the collection to the 
+	 * skiplist and returns true when that is done. If there is an error, lets 
+	 * say an incompatible type is passed, then the method will return false.
+	 * A collection sorted the same way is merged into the base level in one pass
+	 * when it is big compared to the skiplist, otherwise added through a cursor.
+	 */
+	@Override
+	public boolean addAll(Collection<? extends T> c) {
+		if (isViewOfThis(c)) {
+			return false; // everything in it is already here
+		}
+
+		boolean modified = false;
+
+		if (isSameOrder(c)) {
+			return addSorted(c, c.size()) > 0;
+		}
+
+		for (T element : c) {
+			if (add(element)) {
+				modified = true;
+			}
+		}
+
+		return modified;
+	}
+
+	/*
+	 * Takes in a collection of items. Retains all the items that are 
+	 * common between the skiplist and the collection while removing everything else.
+	 * Walks the base level once, unlinking nodes as it goes. A collection sorted
+	 * the same way is merged alongside it, anything else is asked with contains.
+	 * Returns true if anything was removed, otherwise false. 
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		if (c == this) {
+			return false;
+		}
+
+		if (isViewOfThis(c)) {
+			c = new SkipListSet<T>((SortedSet<T>) c);
+		}
+
+		boolean modified = false;
+		boolean merge = isSameOrder(c);
+		Iterator<?> other = c.iterator();
+		T otherValue = null;
+		SkipListNode<T>[] preds = startMerge();
+		SkipListNode<T> node = head.next(0);
+
+		while (node != null) {
+			boolean keep;
+
+			if (merge) {
+				while ((otherValue == null || compare(otherValue, node.value) < 0) && other.hasNext()) {
+					otherValue = (T) other.next();
+				}
+
+				keep = otherValue != null && sameItem(otherValue, node.value);
+			} else {
+				keep = c.contains(node.value);
+			}
+
+			SkipListNode<T> next = node.next(0);
+
+			if (keep) {
+				advanceMerge(preds, node);
+			} else {
+				unlinkNode(preds, node);
+				modified = true;
+			}
+
+			node = next;
+		}
+
+		return modified;
+	}
+
+	/*
+	 * Takes in a collection of items. Removes every item in the collection
+	 * from the skiplist. When removed, the method returns true, 
+	 * otherwise returns false. A collection sorted the same way is merged against the
+	 * base level in one pass when it is big compared to the skiplist, otherwise
+	 * removed through a cursor.
+	 */
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		if (isViewOfThis(c)) {
+			int before = size;
+
+			if (c == this) {
+				clear();
+			} else {
+				c.clear(); // a view of this set, so what it covers is what goes
+			}
+
+			return size != before;
+		}
+
+		boolean modified = false;
+
+		if (isSameOrder(c)) {
+			return removeSorted(c, c.size()) > 0;
+		}
+
+		for (Object element : c) {
+			if (remove(element)) {
+				modified = true;
+			}
+		}
+
+		return modified;
+	}
+
+	/*
+	 * Takes in a batch of items in any order. Sorts a copy of it, then adds the items
+	 * in order so each search starts where the one before it ended (or, for a batch
+	 * big compared to the skiplist, merges it into the base level in one pass).
+	 * Throws an exception if any item is null or incompatible, before anything is added.
+	 * Returns how many items were added.
+	 */
+	public int addBatch(T[] batch) {
+		T[] sorted = sortedBatch(batch, true);
+
+		return addSorted(Arrays.asList(sorted), sorted.length);
+	}
+
+	/*
+	 * Takes in a batch of items in any order and an array for the answers. Sorts a copy of the
+	 * batch and looks the items up in order the same way as addBatch, then sets results[i] to
+	 * whether batch[i] is in the skiplist, finding each item's answer by binary search in the
+	 * sorted copy. Null and incompatible items get false. Throws an exception if results is
+	 * shorter than the batch.
+	 */
+	public void containsBatch(T[] batch, boolean[] results) {
+		if (results.length < batch.length) {
+			throw new IllegalArgumentException("results is shorter than the batch");
+		}
+
+		T[] sorted = sortedBatch(batch, false);
+		boolean[] found = new boolean[sorted.length];
+
+		if (isWorthMerging(sorted.length)) {
+			SkipListNode<T> node = head.next(0);
+
+			for (int i = 0; i < sorted.length; i++) {
+				while (node != null && compare(node.value, sorted[i]) < 0) {
+					node = node.next(0);
+				}
+
+				found[i] = node != null && sameItem(node.value, sorted[i]);
+			}
+		} else {
+			Cursor cursor = cursor();
+
+			for (int i = 0; i < sorted.length; i++) {
+				found[i] = cursor.contains(sorted[i]);
+			}
+		}
+
+		for (int i = 0; i < batch.length; i++) {
+			results[i] = batch[i] != null && isValidType(batch[i])
+					&& found[Arrays.binarySearch(sorted, batch[i], comparator)];
+		}
+	}
+
+	/*
+	 * Takes in a batch of items in any order. Sorts a copy of it and removes the items in
+	 * order the same way as addBatch. Skips null and incompatible items.
+	 * Returns how many items were removed.
+	 */
+	public int removeBatch(T[] batch) {
+		T[] sorted = sortedBatch(batch, false);
+
+		return removeSorted(Arrays.asList(sorted), sorted.length);
+	}
+
+	/*
+	 * Takes no input. Empties the skiplist by
+	 * replacing it with a new, blank, skiplist,
+	 * dropping the old nodes from the update buffer
+	 * and going back to a single level. Returns nothing.
+	 */
+	@Override
+	public void clear() {
+		head = new SkipListNode<>(null, heightCeiling);
+		tail = head;
+		Arrays.fill(update, null);
+		MAX_HEIGHT = 1;
+		size = 0;
+		modCount++;
+		endRebalance();
+	}
+
+	/*
+	 * Takes no input. Asks the level generator for a height between 1
+	 * and the current list height.
+	 */
+	private int randomHeight() {
+		return levelGenerator.nextHeight(MAX_HEIGHT);
+	}
+
+	/*
+	 * Takes in a collection, only used while the list is still empty. Walks the collection once,
+	 * appending each item to the end of every level it belongs on while the items keep coming in
+	 * ascending order. Node number i (counting from 1) gets a height of 1 plus the number of
+	 * trailing zero bits in i over the profile's bits per level, so with p = 1/2 every 2nd node
+	 * reaches level 2, every 4th level 3 and so on,
+	 * which is a perfectly balanced list with no searching and no random heights.
+	 * Repeated items are skipped. As soon as an item is out of order the list built so far is
+	 * already valid, so the rest of the collection simply goes through add.
+	 */
+	private void bulkLoad(Collection<? extends T> c) {
+		bulkLoad(c.iterator(), null);
+	}
+
+	/*
+	 * Takes in the items and where their heights come from (null for the balanced layout).
+	 * Does the bulk load above; readFrom passes the heights stored in a snapshot. The list
+	 * uses enough levels for the tallest node loaded.
+	 */
+	private void bulkLoad(Iterator<? extends T> iterator, LevelGenerator heights) {
+		SkipListNode<T>[] tails = update;	/* last node on each level, reuses the update buffer */
+		Arrays.fill(tails, head);
+		T previous = null;
+
+		while (iterator.hasNext()) {
+			T t = iterator.next();
+
+			if (t == null || !isValidType(t)) {
+				throw new NullPointerException();
+			}
+
+			if (previous != null) {
+				int order = compare(previous, t);
+
+				if (order == 0) {
+					continue;
+				}
+
+				if (order > 0) {
+					add(t);
+
+					while (iterator.hasNext()) {
+						add(iterator.next());
+					}
+
+					return;
+				}
+			}
+
+			int height = heights == null ? profile.balancedHeight(size + 1) : heights.nextHeight(heightCeiling);
+			height = Math.min(height, heightCeiling);
+			SkipListNode<T> newNode = new SkipListNode<>(t, height);
+
+			for (int i = 0; i < height; i++) {
+				tails[i].setNext(i, newNode);
+				tails[i] = newNode;
+			}
+
+			newNode.prev = tail;
+			tail = newNode;
+
+			size++;
+			MAX_HEIGHT = Math.max(MAX_HEIGHT, Math.max(height, levelFor(size)));
+			previous = t;
+		}
+	}
+
+	/*
+	 * Takes in an item count. Returns the number of levels a list of that size should use,
+	 * log(count + 1) in base 1/p rounded up (see SkipListProfile), clamped to between 1 and the height ceiling.
+	 */
+	private int levelFor(int count) {
+		return profile.levelFor(count);
+	}
+
+	/*
+	 * Takes in a collection. Returns true if it is a SortedSet with the same comparator
+	 * (or both in natural order), so walking it visits items in the same order they are in the skiplist.
+	 */
+	private boolean isSameOrder(Collection<?> c) {
+		return c instanceof SortedSet && Objects.equals(((SortedSet<?>) c).comparator(), comparator);
+	}
+
+	/*
+	 * Takes in a collection. Returns true if it is this set or a view of it (a range, or this set or a
+	 * range in reverse). Those can't be walked while this set is changed (their iterators fail fast),
+	 * so the bulk operations handle them up front.
+	 */
+	private boolean isViewOfThis(Collection<?> c) {
+		return c == this
+				|| c instanceof SkipListSet<?>.SubSet && ((SkipListSet<?>.SubSet) c).owner() == this
+				|| c instanceof SkipListSet<?>.DescendingSet && ((SkipListSet<?>.DescendingSet) c).owner() == this;
+	}
+
+	/*
+	 * Takes in the number m of sorted items. Returns true if one merge pass over the base level
+	 * (size + m steps) is cheaper than m searches of about MAX_HEIGHT steps each.
+	 */
+	private boolean isWorthMerging(int count) {
+		return (long) count * MAX_HEIGHT >= size;
+	}
+
+	/*
+	 * Takes in items in the set's order and how many there are. Merges them into the base
+	 * level in one pass when there are enough of them compared to the skiplist, otherwise adds
+	 * them through a cursor so each search starts from the last one. Throws an exception on a
+	 * null or incompatible item. Returns how many were added. Used by addAll and addBatch.
+	 */
+	private int addSorted(Iterable<? extends T> items, int count) {
+		int added = 0;
+
+		if (isWorthMerging(count)) {
+			SkipListNode<T>[] preds = startMerge();
+			SkipListNode<T> node = head.next(0);
+
+			for (T t : items) {
+				if (t == null || !isValidType(t)) {
+					throw new NullPointerException();
+				}
+
+				while (node != null && compare(node.value, t) < 0) {
+					advanceMerge(preds, node);
+					node = node.next(0);
+				}
+
+				if (node != null && sameItem(node.value, t)) {
+					continue;
+				}
+
+				linkNode(preds, t);
+				advanceMerge(preds, preds[0].next(0));
+				added++;
+			}
+
+			return added;
+		}
+
+		Cursor cursor = cursor();
+
+		for (T element : items) {
+			if (cursor.add(element)) {
+				added++;
+			}
+		}
+
+		return added;
 	}
 
 	/*
-	 * Take no input. Checks if there is at least 1 item.
-	 * If not it throws an exception; otherwise returns the first item in the skiplist. 
+	 * Takes in items in the set's order and how many there are. Unlinks them in one merge
+	 * pass over the base level or through a cursor, the same way as addSorted. Skips null and
+	 * incompatible items. Returns how many were removed. Used by removeAll and removeBatch.
 	 */
-	@Override
-	public T first() {
-		if (size == 0) {
-			throw new NoSuchElementException();
+	@SuppressWarnings("unchecked")
+	private int removeSorted(Iterable<?> items, int count) {
+		int removed = 0;
+
+		if (isWorthMerging(count)) {
+			SkipListNode<T>[] preds = startMerge();
+			SkipListNode<T> node = head.next(0);
+
+			for (Object element : items) {
+				if (element == null || !isValidType(element)) {
+					continue;
+				}
+
+				T t = (T) element;
+
+				while (node != null && compare(node.value, t) < 0) {
+					advanceMerge(preds, node);
+					node = node.next(0);
+				}
+
+				if (node != null && sameItem(node.value, t)) {
+					SkipListNode<T> next = node.next(0);
+					unlinkNode(preds, node);
+					node = next;
+					removed++;
+				}
+			}
+
+			return removed;
 		}
-		
-		return head.next[0].value;
+
+		Cursor cursor = cursor();
+
+		for (Object element : items) {
+			if (cursor.remove(element)) {
+				removed++;
+			}
+		}
+
+		return removed;
 	}
 
 	/*
-	 * Takes no input. Checks if there is at least 1 item.
-	 * If there isn't, it throws an exception; otherwise it 
-	 * iterates over the list until it reaches the end
-	 * where it return that last item.
+	 * Takes in a batch and whether null or incompatible items are an error. Returns a copy
+	 * of the batch sorted in the set's order with repeats dropped, leaving the caller's array
+	 * as it is. Bad items throw an exception when strict and are left out of the copy otherwise.
 	 */
-	@Override
-	public T last() {
-		if (size == 0) {
-			throw new NoSuchElementException();
+	private T[] sortedBatch(T[] batch, boolean strict) {
+		T[] sorted = Arrays.copyOf(batch, batch.length);
+		int count = 0;
+
+		for (T t : batch) {
+			if (t == null || !isValidType(t)) {
+				if (strict) {
+					throw new NullPointerException();
+				}
+
+				continue;
+			}
+
+			sorted[count++] = t;
 		}
 
-		SkipListNode<T> node = head;
+		Arrays.sort(sorted, 0, count, comparator);
+		int distinct = 0;
 
-		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
-			while (node.next[i] != null) {
-				node = node.next[i];
+		for (int i = 0; i < count; i++) {
+			if (distinct == 0 || compare(sorted[distinct - 1], sorted[i]) != 0) {
+				sorted[distinct++] = sorted[i];
 			}
 		}
 
-		return node.value;
+		return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
 	}
 
 	/*
-	 * Takes no input. Acts as getter for the size variable and returns that.
+	 * Takes no input. Starts a merge walk along the base level: points the update
+	 * buffer at the head on every level and returns it as the walk's predecessors.
 	 */
-	@Override
-	public int size() {
-		return size;
+	private SkipListNode<T>[] startMerge() {
+		Arrays.fill(update, head);
+		return update;
 	}
 
 	/*
-	 * Takes no input. Checks if the size is 0. 
-	 * If it is, it returns boolean true, otherwise false. 
+	 * Takes in the merge walk's predecessors and the node the walk is stepping past.
+	 * Makes that node the predecessor on every level it is linked on. A node is on
+	 * level i exactly when the level i predecessor points at it, so this costs
+	 * the node's height and the whole walk stays linear.
 	 */
-	@Override
-	public boolean isEmpty() {
-		return size == 0;
+	private void advanceMerge(SkipListNode<T>[] preds, SkipListNode<T> node) {
+		for (int i = 0; i < MAX_HEIGHT && preds[i].next(i) == node; i++) {
+			preds[i] = node;
+		}
 	}
 
 	/*
-	 * Takes in an object. Checks that the object is real and compatible 
-	 * using the isValidType method. If it is ok, it continues or otherwise returns false.
-	 * Checks if that object is found in the skiplist by using compareTo and by iterating over the list.
-	 * If it found the item, it returns true, otherwise returns false.  
+	 * Takes in an object. 
+	 * Checks if it is a comparable type, any item is accepted when there is a comparator.
+	 * Returns true if so, false otherwise.
 	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	public boolean contains(Object o) {
-		if (o == null || !isValidType(o)) {
-			return false;
-		}
-
-		T element = (T) o;
-		SkipListNode<T> node = head;
-		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
-			while (node.next[i] != null && node.next[i].value.compareTo(element) < 0) {
-				node = node.next[i];
-			}
-		}
-
-		node = node.next[0];
-		return node != null && node.value.equals(element);
+	private boolean isValidType(Object o) {
+		return comparator != null || o instanceof Comparable;
 	}
 
 	/*
-	 * Takes no input. Returns the custom SkipListSetIterator.
+	 * Takes in two items. Returns a negative number, zero or a positive number as the
+	 * first is before, the same as or after the second, using the comparator if there is one.
+	 * Used everywhere except the add, remove and contains descents (see findPredecessors).
 	 */
-	@Override
-	public Iterator<T> iterator() {
-		return new SkipListSetIterator();
+	@SuppressWarnings("unchecked")
+	private int compare(T a, T b) {
+		return comparator == null ? ((Comparable<? super T>) a).compareTo(b) : comparator.compare(a, b);
 	}
 
 	/*
-	 * Takes no input. Creates an array and adds the items from the skiplist
-	 * into the array. Returns the array. 
+	 * Takes in two items. Returns true if they are the same item: equals in natural
+	 * order, or a comparator result of zero.
 	 */
-	@Override
-	public Object[] toArray() {
-		Object[] array = new Object[size];
-		int index = 0;
-		SkipListNode<T> node = head.next[0];
-
-		while (node != null) {
-			array[index++] = node.value;
-			node = node.next[0];
-		}
-
-		return array;
+	private boolean sameItem(T a, T b) {
+		return comparator == null ? a.equals(b) : comparator.compare(a, b) == 0;
 	}
 
 	/*
-	 * Takes no input. Creates an array and adds the items from the skiplist
-	 * into the array. Returns the array. 
-	 * 
-	 * Old java method. 
+	 * Takes in an item and a buffer for its predecessors. Walks down the towers filling the
+	 * buffer with the item's predecessor on every level, and returns the first node not less
+	 * than the item, or null if there isn't one.
+	 * Natural order and comparators each get their own loop, so the compare call in each loop
+	 * only ever sees one kind of receiver and the JIT can inline it instead of going through
+	 * a shared helper that mixes both. The two lowest levels read the node fields directly.
+	 * With stats on, the counting descent is used instead so those loops stay as they are.
 	 */
 	@SuppressWarnings("unchecked")
-	@Override
-	public <T1> T1[] toArray(T1[] a) {
-		if (a.length < size) {
-			a = Arrays.copyOf(a, size);
-		}
-
-		int index = 0;
-		SkipListNode<T> node = head.next[0];
-
-		while (node != null) {
-			a[index++] = (T1) node.value;
-			node = node.next[0];
+	private SkipListNode<T> findPredecessors(T t, SkipListNode<T>[] preds) {
+		if (stats != null) {
+			return findCounted(t, preds);
 		}
 
-		if (a.length > size) {
-			a[size] = null;
+		if (comparator == null) {
+			return findNatural((Comparable<? super T>) t, preds);
 		}
 
-		return a;
+		return findCompared(t, comparator, preds);
 	}
 
 	/*
-	 * Takes a generic item input. Checks whether the type is compatible or not
-	 * and throws an exception if not. Otherwise, it finds the correct spot to add 
-	 * uses the update array to add the item and adjust the pointers around it. 
-	 * Adjusts height with binary log formula and returns true once complete.
+	 * Descent for natural order, the search item is the receiver of every compareTo.
 	 */
-	@Override
-	public boolean add(T t) {
-		if (t == null || !isValidType(t)) {
-			throw new NullPointerException();
-		}
-
-		@SuppressWarnings("unchecked")
-		SkipListNode<T>[] update = new SkipListNode[MAX_HEIGHT];
+	private SkipListNode<T> findNatural(Comparable<? super T> key, SkipListNode<T>[] preds) {
 		SkipListNode<T> node = head;
 
-		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
-			while (node.next[i] != null && node.next[i].value.compareTo(t) < 0) {
-				node = node.next[i];
+		for (int i = MAX_HEIGHT - 1; i >= 2; i--) {
+			while (node.upper[i - 2] != null && key.compareTo(node.upper[i - 2].value) > 0) {
+				node = node.upper[i - 2];
 			}
 
-			update[i] = node;
+			preds[i] = node;
 		}
 
-		node = node.next[0];
+		if (MAX_HEIGHT > 1) {
+			while (node.next1 != null && key.compareTo(node.next1.value) > 0) {
+				node = node.next1;
+			}
 
-		if (node != null && node.value.equals(t)) {
-			return false; // Element already exists
+			preds[1] = node;
 		}
 
-		int height = randomHeight();
-
-		if (height > MAX_HEIGHT) {
-			height = MAX_HEIGHT;
+		while (node.next0 != null && key.compareTo(node.next0.value) > 0) {
+			node = node.next0;
 		}
 
-		SkipListNode<T> newNode = new SkipListNode<>(t, height);
+		preds[0] = node;
+		return node.next0;
+	}
 
-		for (int i = 0; i < height; i++) {
-			newNode.next[i] = update[i].next[i];
-			update[i].next[i] = newNode;
-		}
+	/*
+	 * Descent for a comparator, passed in so it stays in a local for the whole loop.
+	 */
+	private SkipListNode<T> findCompared(T t, Comparator<? super T> cmp, SkipListNode<T>[] preds) {
+		SkipListNode<T> node = head;
 
-		size++;
+		for (int i = MAX_HEIGHT - 1; i >= 2; i--) {
+			while (node.upper[i - 2] != null && cmp.compare(node.upper[i - 2].value, t) < 0) {
+				node = node.upper[i - 2];
+			}
 
-		MAX_HEIGHT = (int) Math.ceil(Math.log(size + 1) / Math.log(2)); // Update MAX_HEIGHT
+			preds[i] = node;
+		}
 
-		SkipListNode<T>[] newHeadNext = Arrays.copyOf(head.next, MAX_HEIGHT);
-		head.next = newHeadNext;
+		if (MAX_HEIGHT > 1) {
+			while (node.next1 != null && cmp.compare(node.next1.value, t) < 0) {
+				node = node.next1;
+			}
 
-		// System.out.println("\n\n" + "There are " + size + " elements in the skiplist,
-		// and the current height is " + MAX_HEIGHT + "\n\n");
+			preds[1] = node;
+		}
 
-		return true;
+		while (node.next0 != null && cmp.compare(node.next0.value, t) < 0) {
+			node = node.next0;
+		}
+
+		preds[0] = node;
+		return node.next0;
 	}
 
 	/*
-	 * Takes in an object and attempts to remove it. Checks that the
-	 * input is not null and a compatible type. If not, returns false.
-	 * Otherwise, is searches for the item, if its not found it returns false, 
-	 * and if it is found, removes the item, adjusts the size variable,
-	 * then updates the pointers around, and returns true.
+	 * Descent used while stats are on. Same walk as the other two, through the plain
+	 * compare helper, counting forward steps and compares and handing them to the stats.
 	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	public boolean remove(Object o) {
-		if (o == null || !isValidType(o)) {
-			return false;
-		}
-
-		T element = (T) o;
-		SkipListNode<T>[] update = new SkipListNode[MAX_HEIGHT];
+	private SkipListNode<T> findCounted(T t, SkipListNode<T>[] preds) {
 		SkipListNode<T> node = head;
+		int hops = 0;
+		int compares = 0;
 
 		for (int i = MAX_HEIGHT - 1; i >= 0; i--) {
-			while (node.next[i] != null && node.next[i].value.compareTo(element) < 0) {
-				node = node.next[i];
-			}
+			SkipListNode<T> next = node.next(i);
 
-			update[i] = node;
-		}
+			while (next != null) {
+				compares++;
 
-		node = node.next[0];
-		if (node != null && node.value.equals(element)) {
-			for (int i = 0; i < MAX_HEIGHT; i++) {
-				if (update[i].next[i] != node) {
+				if (compare(next.value, t) >= 0) {
 					break;
 				}
 
-				update[i].next[i] = node.next[i];
+				node = next;
+				next = node.next(i);
+				hops++;
 			}
 
-			size--;
-			return true;
+			preds[i] = node;
 		}
 
-		return false; // Element not found
+		stats.recordSearch(hops, compares);
+		return node.next0;
 	}
 
 	/*
-	 * Takes in a collection. Checks if the skiplist contains every item 
-	 * passed in through the collection. If there are any missing, 
-	 * it returns false, otherwise it iterates over the collection and 
-	 * returns true.
+	 * Takes no input. Starts recording stats for contains, add and remove (see SkipListStats),
+	 * if that isn't already on. Returns the stats, which keep filling until disableStats.
 	 */
-	@Override
-	public boolean containsAll(Collection<?> c) {
-		for (Object element : c) {
-			if (!contains(element)) {
-				return false;
-			}
+	public SkipListStats enableStats() {
+		if (stats == null) {
+			stats = new SkipListStats(this);
 		}
 
-		return true;
+		return stats;
 	}
 
 	/*
-	 * Takes in a collection of items. Adds every item in the collection to the 
-	 * skiplist and returns true when that is done. If there is an error, lets 
-	 * say an incompatible type is passed, then the method will return false.
+	 * Takes no input. Stops recording stats, so the hot path is back to a single null check.
 	 */
-	@Override
-	public boolean addAll(Collection<? extends T> c) {
-		boolean modified = false;
-		for (T element : c) {
-			if (add(element)) {
-				modified = true;
-			}
-		}
+	public void disableStats() {
+		stats = null;
+	}
 
-		return modified;
+	/*
+	 * Takes no input. Returns the stats being recorded, or null if they are off.
+	 */
+	public SkipListStats stats() {
+		return stats;
 	}
 
 	/*
-	 * Takes in a collection of items. Retains all the items that are 
-	 * common between the skiplist and the collection while removing everything else.
-	 * Returns true when that is done or false if there is an error/exception. 
+	 * Takes no input. Returns the profile the set was made with.
 	 */
-	@Override
-	public boolean retainAll(Collection<?> c) {
-		boolean modified = false;
-		Iterator<T> iterator = iterator();
+	public SkipListProfile profile() {
+		return profile;
+	}
 
-		while (iterator.hasNext()) {
-			if (!c.contains(iterator.next())) {
-				iterator.remove();
-				modified = true;
+	/*
+	 * Takes no input. Walks every level in use from the head and returns how many nodes
+	 * are linked on each, level 0 first. Used by the stats for the shape of the list, on the
+	 * thread that owns the set (see SkipListStats.snapshot).
+	 */
+	int[] levelCounts() {
+		int levels = MAX_HEIGHT;
+		int[] counts = new int[levels];
+
+		for (int i = 0; i < levels; i++) {
+			for (SkipListNode<T> node = head.next(i); node != null; node = node.next(i)) {
+				counts[i]++;
 			}
 		}
-		return modified;
+
+		return counts;
 	}
 
 	/*
-	 * Takes in a collection of items. Removes every item in the collection
-	 * from the skiplist. When removed, the method returns true, 
-	 * otherwise returns false.
+	 * Takes no input. Rebalances the whole list in place in one linear pass
+	 * over the base level (see reBalanceStep). If a bounded pass is already
+	 * part way through, it is finished rather than started over. Does not return anything. 
 	 */
-	@Override
-	public boolean removeAll(Collection<?> c) {
-		boolean modified = false;
-		for (Object element : c) {
-			if (remove(element)) {
-				modified = true;
+	public void reBalance() {
+		reBalanceStep(Integer.MAX_VALUE);
+	}
+
+	/*
+	 * Takes in the most nodes to place in this call. Does one slice of an in place rebalance:
+	 * walks the base level from where the last slice stopped, gives node number i (counting from 1)
+	 * the deterministic height 1 + trailing zero bits of i over the bits per level (same layout as
+	 * the bulk load) and relinks
+	 * the upper levels behind it. Nodes are reused; a node's upper array is only reallocated when it
+	 * is too short for its new height. The base level is never touched, so iteration is unaffected.
+	 * 
+	 * Between slices the list stays valid: the rebalanced prefix is linked on every level to the
+	 * first not yet placed node the old layout had on that level. If the set is changed between
+	 * slices, the next slice starts the pass over. Returns true once the whole list is done.
+	 */
+	public boolean reBalanceStep(int maxNodes) {
+		if (!rebalancing || rebalanceModCount != modCount) {
+			if (rebalanceTails == null) {
+				rebalanceTails = SkipListNode.newArray(heightCeiling);
+				rebalanceFrontier = SkipListNode.newArray(heightCeiling);
+			}
+
+			Arrays.fill(rebalanceTails, head);
+			for (int i = 0; i < heightCeiling; i++) {
+				rebalanceFrontier[i] = head.next(i);
 			}
+
+			rebalanceCursor = head.next(0);
+			rebalanceRank = 0;
+			rebalanceModCount = modCount;
+			rebalancing = true;
 		}
 
-		return modified;
+		layoutCount++;
+
+		SkipListNode<T>[] tails = rebalanceTails;
+		SkipListNode<T>[] frontier = rebalanceFrontier;
+		SkipListNode<T> node = rebalanceCursor;
+
+		for (int placed = 0; node != null && placed < maxNodes; placed++) {
+			for (int i = 0; i < MAX_HEIGHT && frontier[i] == node; i++) {
+				frontier[i] = node.next(i); // read the old link before it is rewritten
+			}
+
+			rebalanceRank++;
+			int height = Math.min(profile.balancedHeight(rebalanceRank), MAX_HEIGHT);
+
+			node.ensureHeight(height);
+
+			for (int i = 1; i < height; i++) {
+				tails[i].setNext(i, node);
+				tails[i] = node;
+			}
+
+			for (int i = height; i < node.height(); i++) {
+				node.setNext(i, null);
+			}
+
+			node = node.next(0);
+		}
+
+		rebalanceCursor = node;
+
+		for (int i = 1; i < MAX_HEIGHT; i++) {
+			tails[i].setNext(i, node == null ? null : frontier[i]);
+		}
+
+		if (node == null) {
+			endRebalance();
+			return true;
+		}
+
+		return false;
 	}
 
 	/*
-	 * Takes no input. Empties the skiplist by
-	 * replacing it with a new, blank, skiplist.
-	 * Returns nothing.
+	 * Takes no input. Stops any rebalance pass and drops the node references it was holding.
 	 */
-	@Override
-	public void clear() {
-		head = new SkipListNode<>(null, MAX_HEIGHT);
-		size = 0;
+	private void endRebalance() {
+		rebalancing = false;
+		rebalanceCursor = null;
+
+		if (rebalanceTails != null) {
+			Arrays.fill(rebalanceTails, null);
+			Arrays.fill(rebalanceFrontier, null);
+		}
 	}
 
 	/*
-	 * Takes no input. Generates a random height. Minimum height of 1
-	 * for the base level, otherwise uses a coin flip to grow the 
-	 * height randomly. 
-	 * Max height is decided in the add and rebalance binary log formula.
+	 * Takes in a stream, the codec for the items and whether to include each node's height.
+	 * Writes the set as a snapshot: a header (magic number, version, flags, the codec's name and
+	 * the item count), then every item in order through the codec, each followed by the number
+	 * of levels it is linked on if heights are included. Walks the base level once and never
+	 * copies the set. Flushes but does not close the stream.
+	 * 
+	 * Without heights a restore lays the list out balanced, which is usually what you want;
+	 * heights cost one byte per item and bring back the exact same shape.
 	 */
-	private int randomHeight() {
-		int height = 1;
+	public void writeTo(OutputStream out, SkipListCodec<T> codec, boolean withHeights) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, SNAPSHOT_BUFFER));
+		data.writeInt(SNAPSHOT_MAGIC);
+		data.writeByte(SNAPSHOT_VERSION);
+		data.writeByte(withHeights ? SNAPSHOT_HEIGHTS : 0);
+		data.writeUTF(codec.name());
+		data.writeInt(size);
+
+		SkipListNode<T>[] frontier = SkipListNode.newArray(MAX_HEIGHT);	/* next node still to come on each level */
+		T previous = null;
+
+		for (int i = 0; i < MAX_HEIGHT; i++) {
+			frontier[i] = head.next(i);
+		}
+
+		for (SkipListNode<T> node = head.next(0); node != null; node = node.next(0)) {
+			codec.write(previous, node.value, data);
+			previous = node.value;
+
+			if (withHeights) {
+				int height = 1;
 
-		while (height < MAX_HEIGHT && Math.random() < 0.5) {
-			height++;
+				while (height < MAX_HEIGHT && frontier[height] == node) {
+					frontier[height] = node.next(height);
+					height++;
+				}
+
+				data.writeByte(height);
+			}
 		}
 
-		return height;
+		data.flush();
 	}
 
 	/*
-	 * Takes in an object. 
-	 * Checks if it is a comparable type.
-	 * Returns true if so, false otherwise.
+	 * Takes in a channel (e.g. a FileChannel), the codec and whether to include heights.
+	 * Writes a snapshot to it the same way as writeTo(OutputStream), without closing it.
 	 */
-	private boolean isValidType(Object o) {
-		return o instanceof Comparable;
+	public void writeTo(WritableByteChannel channel, SkipListCodec<T> codec, boolean withHeights) throws IOException {
+		writeTo(Channels.newOutputStream(channel), codec, withHeights);
 	}
 
 	/*
-	 * Takes no input. Makes a new temporary skiplist
-	 * and copies the old items values into it. By doing 
-	 * so, the add into the new skiplist will pick a new
-	 * height for the item. Does not return anything. 
+	 * Takes in a stream holding a snapshot and the codec it was written with. Loads the items into
+	 * this set, which has to be empty, through the same one pass bulk load the constructors use:
+	 * balanced, or with the stored heights if the snapshot has them. Items that turn out not to be
+	 * in this set's order (a snapshot of a set sorted another way) go through add instead.
+	 * Reads ahead in the stream through a buffer, so anything after the snapshot may be consumed.
+	 * Throws an IOException if the stream is not a snapshot of this version, uses another codec
+	 * or ends early, leaving the set empty, and an IllegalStateException if the set is not empty.
 	 */
-	public void reBalance() {
-		SkipListSet<T> newSkipList = new SkipListSet<>();
+	public void readFrom(InputStream in, SkipListCodec<T> codec) throws IOException {
+		if (size != 0) {
+			throw new IllegalStateException("readFrom needs an empty set");
+		}
 
-		for (T element : this) {
-			newSkipList.add(element);
+		try {
+			load(new DataInputStream(new BufferedInputStream(in, SNAPSHOT_BUFFER)), codec);
+		} catch (UncheckedIOException e) {
+			clear();
+			throw e.getCause();
+		} catch (IOException | RuntimeException e) {
+			clear();
+			throw e;
+		}
+	}
+
+	/*
+	 * Takes in the snapshot stream and the codec. Checks the header and bulk loads the items,
+	 * for readFrom, which empties the set again if this fails part way.
+	 */
+	private void load(DataInputStream data, SkipListCodec<T> codec) throws IOException {
+		if (data.readInt() != SNAPSHOT_MAGIC || data.readByte() != SNAPSHOT_VERSION) {
+			throw new IOException("not a skiplist snapshot of version " + SNAPSHOT_VERSION);
+		}
+
+		boolean withHeights = (data.readByte() & SNAPSHOT_HEIGHTS) != 0;
+		String name = data.readUTF();
+
+		if (!name.equals(codec.name())) {
+			throw new IOException("snapshot was written with codec " + name + ", not " + codec.name());
+		}
+
+		int count = data.readInt();
+
+		if (count < 0) {
+			throw new IOException("snapshot has a bad item count " + count);
 		}
 
-		this.head = newSkipList.head;
-		this.size = newSkipList.size;
-		this.MAX_HEIGHT = (int) Math.ceil(Math.log(size + 1) / Math.log(2)); // Update MAX_HEIGHT
+		SnapshotReader reader = new SnapshotReader(data, codec, withHeights, count);
+		bulkLoad(reader, withHeights ? reader : null);
+	}
+
+	/*
+	 * Takes in a channel (e.g. a FileChannel) holding a snapshot and the codec it was written with.
+	 * Loads it into this empty set the same way as readFrom(InputStream), without closing the channel.
+	 */
+	public void readFrom(ReadableByteChannel channel, SkipListCodec<T> codec) throws IOException {
+		readFrom(Channels.newInputStream(channel), codec);
 	}
 
 	/*
@@ -0,0 +1,368 @@
+
+/*
+ * Optional hot path stats for a SkipListSet, turned on with enableStats().
+ * While off, the set pays one null check per contains, add and remove and nothing else.
+ * While on, every one of those calls records:
+ *
+ *   hops      forward steps taken by its search, as a histogram
+ *   compares  compares made by its search, as a histogram
+ *   latency   time taken by the call, as a histogram per operation
+ *
+ * The shape of the list (nodes on each level, average height) isn't tracked as it changes,
+ * it is counted by walking the list when snapshot() is called. That has to happen on the
+ * thread that uses the set, e.g. every so many operations; the MBean only reports the shape
+ * as of the last snapshot, so a JMX client never walks the list while it is being changed.
+ *
+ * A badly shaped list shows up as more hops per search than its size needs, and as level counts
+ * that drift from size * p^level. occupancyError puts a number on that drift, so reBalance can be
+ * called when it gets large instead of on a timer. Slow compares with normal hop counts point at
+ * the items' compareTo instead.
+ *
+ * The set isn't thread safe and neither are these counters: they are plain fields written by
+ * whichever thread uses the set. A JMX client reading from another thread may see values a
+ * little out of date, which is fine for monitoring.
+ *
+ */
+
+import java.lang.management.ManagementFactory;
+
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * external class, the stats of one SkipListSet, readable as snapshots or through JMX
+ */
+public class SkipListStats implements SkipListStatsMBean {
+	static final int CONTAINS = 0;
+	static final int ADD = 1;
+	static final int REMOVE = 2;
+
+	static final int COUNT_BUCKETS = 256;	/* hop and compare histograms, one bucket per count, the last one for 255 and up */
+	static final int SUB_BUCKETS = 8;	/* latency buckets per power of two, so each is within 12.5% */
+	static final int LATENCY_BUCKETS = 61 * SUB_BUCKETS;	/* enough for any non negative long */
+	static final int MIN_EXPECTED = 32;	/* levels expected to hold fewer nodes are too noisy for occupancyError */
+
+	private final SkipListSet<?> set;
+	private final long[] hops = new long[COUNT_BUCKETS];
+	private final long[] compares = new long[COUNT_BUCKETS];
+	private final long[][] latency = new long[3][LATENCY_BUCKETS];	/* one histogram per operation */
+	private long searches;
+	private long totalHops;
+	private long totalCompares;
+	private volatile Snapshot last;	/* latest snapshot, where the MBean gets the shape from */
+
+	/*
+	 * constructor for the stats of a set, only made by SkipListSet.enableStats.
+	 */
+	SkipListStats(SkipListSet<?> set) {
+		this.set = set;
+	}
+
+	/*
+	 * Takes in the hops and compares of one search. Adds them to the histograms.
+	 */
+	void recordSearch(int hopCount, int compareCount) {
+		hops[Math.min(hopCount, COUNT_BUCKETS - 1)]++;
+		compares[Math.min(compareCount, COUNT_BUCKETS - 1)]++;
+		totalHops += hopCount;
+		totalCompares += compareCount;
+		searches++;
+	}
+
+	/*
+	 * Takes in the operation (CONTAINS, ADD or REMOVE) and how long it took. Adds it to that operation's histogram.
+	 */
+	void recordOp(int op, long nanos) {
+		latency[op][latencyBucket(nanos)]++;
+	}
+
+	/*
+	 * An immutable copy of the stats and the list shape at one moment.
+	 */
+	public static final class Snapshot {
+		public final long containsCount;
+		public final long addCount;
+		public final long removeCount;
+		public final long searches;
+		public final double meanHops;
+		public final long p50Hops;
+		public final long p99Hops;
+		public final double meanCompares;
+		public final long p50Compares;
+		public final long p99Compares;
+		public final long p50LatencyNanos;	/* contains, add and remove together */
+		public final long p99LatencyNanos;
+		public final long p99ContainsNanos;
+		public final long p99AddNanos;
+		public final long p99RemoveNanos;
+		public final int size;
+		public final int height;
+		public final int[] levelCounts;	/* nodes linked on each level in use, level 0 first */
+		public final double averageHeight;
+		public final double occupancyError;
+
+		/*
+		 * constructor for a snapshot. Takes in the stats and copies out the numbers,
+		 * walking the set once for its shape.
+		 */
+		Snapshot(SkipListStats stats) {
+			long[] all = stats.allLatency();
+
+			containsCount = total(stats.latency[CONTAINS]);
+			addCount = total(stats.latency[ADD]);
+			removeCount = total(stats.latency[REMOVE]);
+			searches = stats.searches;
+			meanHops = searches == 0 ? 0 : (double) stats.totalHops / searches;
+			p50Hops = percentile(stats.hops, 0.50);
+			p99Hops = percentile(stats.hops, 0.99);
+			meanCompares = searches == 0 ? 0 : (double) stats.totalCompares / searches;
+			p50Compares = percentile(stats.compares, 0.50);
+			p99Compares = percentile(stats.compares, 0.99);
+			p50LatencyNanos = latencyAt(percentile(all, 0.50));
+			p99LatencyNanos = latencyAt(percentile(all, 0.99));
+			p99ContainsNanos = latencyAt(percentile(stats.latency[CONTAINS], 0.99));
+			p99AddNanos = latencyAt(percentile(stats.latency[ADD], 0.99));
+			p99RemoveNanos = latencyAt(percentile(stats.latency[REMOVE], 0.99));
+
+			size = stats.set.size;
+			height = stats.set.MAX_HEIGHT;
+			levelCounts = stats.set.levelCounts();
+			averageHeight = size == 0 ? 0 : (double) total(levelCounts) / size;
+			occupancyError = occupancyError(levelCounts, stats.set.profile().probability());
+		}
+
+		@Override
+		public String toString() {
+			return String.format("searches=%,d hops=%.1f (p99 %d) compares=%.1f (p99 %d) latency p50=%,dns p99=%,dns height=%d avg=%.2f occupancyError=%.2f",
+					searches, meanHops, p99Hops, meanCompares, p99Compares, p50LatencyNanos, p99LatencyNanos,
+					height, averageHeight, occupancyError);
+		}
+	}
+
+	/*
+	 * Takes no input. Returns a snapshot of everything recorded so far and the current shape of
+	 * the list, and keeps it for the MBean. Walks the list, so call it from the thread using the set.
+	 */
+	public Snapshot snapshot() {
+		last = new Snapshot(this);
+		return last;
+	}
+
+	/*
+	 * Takes in a name for the set. Registers these stats with the platform MBean server as
+	 * SkipListSet:type=Stats,name=<name> and returns the object name, for unregistering later.
+	 * Throws a JMException if the name is taken or not valid.
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("SkipListSet:type=Stats,name=" + ObjectName.quote(name));
+
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(hops, 0);
+		Arrays.fill(compares, 0);
+
+		for (long[] op : latency) {
+			Arrays.fill(op, 0);
+		}
+
+		searches = 0;
+		totalHops = 0;
+		totalCompares = 0;
+	}
+
+	@Override
+	public long getContainsCount() {
+		return total(latency[CONTAINS]);
+	}
+
+	@Override
+	public long getAddCount() {
+		return total(latency[ADD]);
+	}
+
+	@Override
+	public long getRemoveCount() {
+		return total(latency[REMOVE]);
+	}
+
+	@Override
+	public double getMeanHops() {
+		return searches == 0 ? 0 : (double) totalHops / searches;
+	}
+
+	@Override
+	public long getP99Hops() {
+		return percentile(hops, 0.99);
+	}
+
+	@Override
+	public double getMeanCompares() {
+		return searches == 0 ? 0 : (double) totalCompares / searches;
+	}
+
+	@Override
+	public long getP99Compares() {
+		return percentile(compares, 0.99);
+	}
+
+	@Override
+	public long getP50LatencyNanos() {
+		return latencyAt(percentile(allLatency(), 0.50));
+	}
+
+	@Override
+	public long getP99LatencyNanos() {
+		return latencyAt(percentile(allLatency(), 0.99));
+	}
+
+	@Override
+	public int getSize() {
+		return set.size;
+	}
+
+	@Override
+	public int getHeight() {
+		return set.MAX_HEIGHT;
+	}
+
+	@Override
+	public int[] getLevelCounts() {
+		Snapshot snapshot = last;
+		return snapshot == null ? new int[0] : snapshot.levelCounts.clone();
+	}
+
+	@Override
+	public double getAverageHeight() {
+		Snapshot snapshot = last;
+		return snapshot == null ? 0 : snapshot.averageHeight;
+	}
+
+	@Override
+	public double getOccupancyError() {
+		Snapshot snapshot = last;
+		return snapshot == null ? 0 : snapshot.occupancyError;
+	}
+
+	/*
+	 * Takes no input. Returns the latency histograms of the three operations added together.
+	 */
+	private long[] allLatency() {
+		long[] all = new long[LATENCY_BUCKETS];
+
+		for (long[] op : latency) {
+			for (int i = 0; i < LATENCY_BUCKETS; i++) {
+				all[i] += op[i];
+			}
+		}
+
+		return all;
+	}
+
+	/*
+	 * Takes in the nodes on each level and p. Returns how far the worst level is from the
+	 * size * p^level nodes a well shaped list has there, as a fraction (0.5 is 50% off).
+	 * Levels expected to hold fewer than MIN_EXPECTED nodes are left out, they vary too much
+	 * by chance. Near 0 for a random or rebalanced list, it grows as removes thin some levels
+	 * more than others; a list where it passes about 0.5 is worth a reBalance.
+	 */
+	static double occupancyError(int[] levelCounts, double p) {
+		double worst = 0;
+		double expected = levelCounts.length == 0 ? 0 : levelCounts[0];
+
+		for (int i = 1; i < levelCounts.length; i++) {
+			expected *= p;
+
+			if (expected < MIN_EXPECTED) {
+				break;
+			}
+
+			worst = Math.max(worst, Math.abs(levelCounts[i] / expected - 1));
+		}
+
+		return worst;
+	}
+
+	/*
+	 * Takes in a histogram and a fraction between 0 and 1. Returns the index of the bucket
+	 * that fraction of the recorded values falls in, or 0 if nothing was recorded.
+	 */
+	static int percentile(long[] counts, double fraction) {
+		long target = (long) Math.ceil(total(counts) * fraction);
+		long seen = 0;
+
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+
+			if (seen >= target && seen > 0) {
+				return i;
+			}
+		}
+
+		return 0;
+	}
+
+	/*
+	 * Takes in a time in nanoseconds. Returns its latency bucket: exact below SUB_BUCKETS, then
+	 * SUB_BUCKETS buckets for each power of two, picked by the bits after the highest one.
+	 */
+	static int latencyBucket(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) Math.max(nanos, 0);
+		}
+
+		int msb = 63 - Long.numberOfLeadingZeros(nanos);
+
+		return (msb - 2) * SUB_BUCKETS + (int) ((nanos >>> (msb - 3)) & (SUB_BUCKETS - 1));
+	}
+
+	/*
+	 * Takes in a latency bucket. Returns the largest time that lands in it.
+	 */
+	static long latencyAt(int bucket) {
+		if (bucket + 1 < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int next = bucket + 1;
+
+		if (next >= LATENCY_BUCKETS) {
+			return Long.MAX_VALUE;
+		}
+
+		int msb = next / SUB_BUCKETS + 2;
+
+		return ((long) (SUB_BUCKETS + next % SUB_BUCKETS) << (msb - 3)) - 1;
+	}
+
+	/*
+	 * Takes in a histogram. Returns the sum of its buckets.
+	 */
+	static long total(long[] counts) {
+		long sum = 0;
+
+		for (long count : counts) {
+			sum += count;
+		}
+
+		return sum;
+	}
+
+	/*
+	 * Takes in counts per level. Returns their sum.
+	 */
+	static long total(int[] counts) {
+		long sum = 0;
+
+		for (int count : counts) {
+			sum += count;
+		}
+
+		return sum;
+	}
+}
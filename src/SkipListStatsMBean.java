@@ -0,0 +1,48 @@
+
+/*
+ * JMX view of a SkipListSet's stats (see SkipListStats), so a running set can be watched
+ * from jconsole or any other JMX client once SkipListStats.register has been called.
+ *
+ */
+
+/*
+ * interface for the stats MBean, read only attributes plus a reset operation
+ */
+public interface SkipListStatsMBean {
+
+	/* number of contains, add and remove calls recorded */
+	long getContainsCount();
+
+	long getAddCount();
+
+	long getRemoveCount();
+
+	/* forward steps and compares per search, averaged and at the 99th percentile */
+	double getMeanHops();
+
+	long getP99Hops();
+
+	double getMeanCompares();
+
+	long getP99Compares();
+
+	/* latency of contains, add and remove together, in nanoseconds */
+	long getP50LatencyNanos();
+
+	long getP99LatencyNanos();
+
+	/* current item count and levels in use */
+	int getSize();
+
+	int getHeight();
+
+	/* shape of the list as of the last SkipListStats.snapshot(), empty before the first one */
+	int[] getLevelCounts();
+
+	double getAverageHeight();
+
+	double getOccupancyError();
+
+	/* forgets everything recorded so far */
+	void reset();
+}
@@ -1,26 +1,49 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.Random;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
+import javax.management.JMException;
+
 public class SkipListTestHarness
 {
+	/*
+	 * Times one run of a task in milliseconds with the monotonic nanosecond clock.
+	 * Good enough for the size of these cases; see SkipListBenchmark for warmed up per operation numbers.
+	 */
 	private static class CPUTimer
 	{
 		public static <T> long timeFor(Callable<T> task)
 		{
 			try
 			{
-				long start = System.currentTimeMillis();
+				long start = System.nanoTime();
 				T t = task.call();
-				long end = System.currentTimeMillis();
-				return end - start;
+				long end = System.nanoTime();
+				return (end - start) / 1000000;
 			}
 			
 			catch (Exception e)
@@ -33,6 +56,21 @@ public class SkipListTestHarness
 		}
 	}
 	
+	/*
+	 * Bytes allocated so far by the calling thread, or -1 if the JVM can't tell us.
+	 */
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+		}
+		
+		return -1;
+	}
+	
 	static long RandomSeed = 1;
 
 	static Random RandomGenerator = new Random(RandomSeed);
@@ -121,8 +159,6 @@ public class SkipListTestHarness
 
 	private static <T extends Comparable<T>> void executeCase(ArrayList<? extends T> values, ArrayList<? extends T> strikes, boolean includeLinkedList, boolean includeRemoves) {
 		ArrayList<T> removeList = generateRemoveList(strikes);
-		long start;
-		long end;
 		long ms;
 
 		if(includeLinkedList) {
@@ -146,10 +182,12 @@ public class SkipListTestHarness
  
 		
 		if(true) {
-			SkipListSet<T> skipListSet = new SkipListSet<T>();
+			SkipListSet<T> skipListSet = new SkipListSet<T>(new GeometricLevelGenerator(RandomSeed));
 			
 			System.out.printf("  SkipListSet ");
+			long bytes = allocatedBytes();
 			ms = CPUTimer.timeFor(() -> skipListSet.addAll(values));
+			bytes = allocatedBytes() - bytes;
 			System.out.printf("add: %,6dms  ", ms);
 			ms = CPUTimer.timeFor(() -> executeFinds(skipListSet, strikes));
 			System.out.printf("find: %,6dms  ", ms);
@@ -161,13 +199,11 @@ public class SkipListTestHarness
 				System.out.printf("find: %,6dms  ", ms);
 			}
 	
+			System.out.printf("alloc: %,d B/add", bytes / Math.max(1, values.size()));
 			System.out.printf("\n");
 			System.out.printf("                                             ");
 	
-			start = System.currentTimeMillis();
-			skipListSet.reBalance();
-			end = System.currentTimeMillis();
-			ms = end - start;
+			ms = CPUTimer.timeFor(() -> { skipListSet.reBalance(); return null; });
 			System.out.printf("bal: %,6dms  ", ms);
 	
 			ms = CPUTimer.timeFor(() -> executeFinds(skipListSet, strikes));
@@ -203,6 +239,84 @@ public class SkipListTestHarness
 		System.out.printf("\n");		
 	}
 
+	private static void executeIntPrimitiveCase(ArrayList<Integer> values, ArrayList<Integer> strikes, boolean includeRemoves) {
+		int[] valueKeys = values.stream().mapToInt(Integer::intValue).toArray();
+		int[] strikeKeys = strikes.stream().mapToInt(Integer::intValue).toArray();
+		ArrayList<Integer> removeList = generateRemoveList(strikes);
+		int[] removeKeys = removeList.stream().mapToInt(Integer::intValue).toArray();
+		IntSkipListSet intSet = new IntSkipListSet(IntSkipListSet.DEFAULT_HEIGHT_CEILING, new GeometricLevelGenerator(RandomSeed));
+		long ms;
+
+		System.out.printf("  IntSkipList ");
+		long bytes = allocatedBytes();
+		ms = CPUTimer.timeFor(() -> { for(int k : valueKeys) intSet.add(k); return null; });
+		bytes = allocatedBytes() - bytes;
+		System.out.printf("add: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> { int hits = 0; for(int k : strikeKeys) if(intSet.contains(k)) hits++; return hits; });
+		System.out.printf("find: %,6dms  ", ms);
+		if(includeRemoves) {
+			ms = CPUTimer.timeFor(() -> { for(int k : removeKeys) intSet.remove(k); return null; });
+			System.out.printf("del: %,6dms  ", ms);
+			ms = CPUTimer.timeFor(() -> { int hits = 0; for(int k : strikeKeys) if(intSet.contains(k)) hits++; return hits; });
+			System.out.printf("find: %,6dms  ", ms);
+		}
+		System.out.printf("alloc: %,d B/add\n", bytes / Math.max(1, valueKeys.length));
+
+		System.gc();
+	}
+
+	private static void executeOffHeapCase(ArrayList<Integer> values, ArrayList<Integer> strikes, boolean includeRemoves) {
+		long[] valueKeys = values.stream().mapToLong(Integer::longValue).toArray();
+		long[] strikeKeys = strikes.stream().mapToLong(Integer::longValue).toArray();
+		ArrayList<Integer> removeList = generateRemoveList(strikes);
+		long[] removeKeys = removeList.stream().mapToLong(Integer::longValue).toArray();
+		OffHeapLongSkipListSet offHeapSet = new OffHeapLongSkipListSet(OffHeapLongSkipListSet.DEFAULT_CAPACITY, new GeometricLevelGenerator(RandomSeed));
+		long ms;
+
+		System.out.printf("  OffHeapSkip ");
+		long bytes = allocatedBytes();
+		ms = CPUTimer.timeFor(() -> { for(long k : valueKeys) offHeapSet.add(k); return null; });
+		bytes = allocatedBytes() - bytes;
+		System.out.printf("add: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> { int hits = 0; for(long k : strikeKeys) if(offHeapSet.contains(k)) hits++; return hits; });
+		System.out.printf("find: %,6dms  ", ms);
+		if(includeRemoves) {
+			ms = CPUTimer.timeFor(() -> { for(long k : removeKeys) offHeapSet.remove(k); return null; });
+			System.out.printf("del: %,6dms  ", ms);
+			ms = CPUTimer.timeFor(() -> { int hits = 0; for(long k : strikeKeys) if(offHeapSet.contains(k)) hits++; return hits; });
+			System.out.printf("find: %,6dms  ", ms);
+		}
+		System.out.printf("heap: %,d B/add  arena: %,d B/key\n", bytes / Math.max(1, valueKeys.length), offHeapSet.arenaBytesUsed() / Math.max(1, valueKeys.length));
+
+		System.gc();
+	}
+
+	private static void executeDoublePrimitiveCase(ArrayList<Double> values, ArrayList<Double> strikes, boolean includeRemoves) {
+		double[] valueKeys = values.stream().mapToDouble(Double::doubleValue).toArray();
+		double[] strikeKeys = strikes.stream().mapToDouble(Double::doubleValue).toArray();
+		ArrayList<Double> removeList = generateRemoveList(strikes);
+		double[] removeKeys = removeList.stream().mapToDouble(Double::doubleValue).toArray();
+		DoubleSkipListSet doubleSet = new DoubleSkipListSet(DoubleSkipListSet.DEFAULT_HEIGHT_CEILING, new GeometricLevelGenerator(RandomSeed));
+		long ms;
+
+		System.out.printf("  DblSkipList ");
+		long bytes = allocatedBytes();
+		ms = CPUTimer.timeFor(() -> { for(double k : valueKeys) doubleSet.add(k); return null; });
+		bytes = allocatedBytes() - bytes;
+		System.out.printf("add: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> { int hits = 0; for(double k : strikeKeys) if(doubleSet.contains(k)) hits++; return hits; });
+		System.out.printf("find: %,6dms  ", ms);
+		if(includeRemoves) {
+			ms = CPUTimer.timeFor(() -> { for(double k : removeKeys) doubleSet.remove(k); return null; });
+			System.out.printf("del: %,6dms  ", ms);
+			ms = CPUTimer.timeFor(() -> { int hits = 0; for(double k : strikeKeys) if(doubleSet.contains(k)) hits++; return hits; });
+			System.out.printf("find: %,6dms  ", ms);
+		}
+		System.out.printf("alloc: %,d B/add\n", bytes / Math.max(1, valueKeys.length));
+
+		System.gc();
+	}
+
 	public static void executeStringCase(int listSize, int strikeSize, int stringSize, boolean includeLinkedList, boolean includeRemoves) {
 		System.out.printf("CASE: %,d strings of length %,d, %,d finds, %,d removals.  Generating...\n", listSize, stringSize, strikeSize, (strikeSize/2));
 
@@ -218,6 +332,8 @@ public class SkipListTestHarness
 		ArrayList<Integer> intlist = generateIntArrayList(listSize);
 		ArrayList<Integer> strikes = generateStrikeList(intlist, strikeSize);
 		
+		executeIntPrimitiveCase(intlist, strikes, includeRemoves);
+		executeOffHeapCase(intlist, strikes, includeRemoves);
 		executeCase(intlist, strikes, includeLinkedList, includeRemoves);
 	}
 	
@@ -227,9 +343,508 @@ public class SkipListTestHarness
 		ArrayList<Double> doubles = generateDoubleArrayList(listSize);
 		ArrayList<Double> strikes = generateStrikeList(doubles, strikeSize);
 		
+		executeDoublePrimitiveCase(doubles, strikes, includeRemoves);
 		executeCase(doubles, strikes, includeLinkedList, includeRemoves);
 	}
 	
+	private static <T> void executeThreads(int threads, Collection<T> coll, ArrayList<? extends T> values, ArrayList<? extends T> strikes) {
+		Thread[] workers = new Thread[threads];
+
+		for(int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread(() -> {
+				for(int i = id; i < strikes.size(); i += threads) {
+					coll.contains(strikes.get(i));
+					if(i % 10 == 0) {
+						coll.remove(strikes.get(i));
+						coll.add(values.get(i % values.size()));
+					}
+				}
+			});
+			workers[t].start();
+		}
+
+		for(Thread worker : workers) {
+			try {
+				worker.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public static void executeIndexedIntCase(int listSize, int strikeSize) {
+		System.out.printf("CASE: %,d integers, %,d random get(index) lookups, median, p99 and a top 1%% subList.  Generating...\n", listSize, strikeSize);
+
+		ArrayList<Integer> intlist = generateIntArrayList(listSize);
+		IndexedSkipListSet<Integer> indexedSet = new IndexedSkipListSet<Integer>(IndexedSkipListSet.DEFAULT_HEIGHT_CEILING, new GeometricLevelGenerator(RandomSeed));
+		long ms;
+
+		System.out.printf("  IndexedSkip ");
+		ms = CPUTimer.timeFor(() -> indexedSet.addAll(intlist));
+		System.out.printf("add: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> { long sum = 0; for(int i = 0; i < strikeSize; i++) sum += indexedSet.get(RandomGenerator.nextInt(indexedSet.size())); return sum; });
+		System.out.printf("get: %,6dms  ", ms);
+
+		long start = System.nanoTime();
+		Integer median = indexedSet.get(indexedSet.size() / 2);
+		Integer p99 = indexedSet.get((int) (indexedSet.size() * 0.99));
+		System.out.printf("median+p99: %,.3fms (%d, %d)  ", (System.nanoTime() - start) / 1e6, median, p99);
+		ms = CPUTimer.timeFor(() -> { long sum = 0; for(Integer value : indexedSet.subList(indexedSet.size() * 99 / 100, indexedSet.size())) sum += value; return sum; });
+		System.out.printf("top 1%%: %,6dms\n", ms);
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
+	public static void executePersistentIntCase(int listSize, int strikeSize) {
+		System.out.printf("CASE: %,d integers in a memory mapped file, %,d finds after reopen.  Generating...\n", listSize, strikeSize);
+
+		ArrayList<Integer> intlist = generateIntArrayList(listSize);
+		ArrayList<Integer> strikes = generateStrikeList(intlist, strikeSize);
+		long ms;
+
+		try {
+			Path file = Files.createTempFile("skiplist", ".bin");
+
+			try {
+				try (OffHeapLongSkipListSet built = OffHeapLongSkipListSet.open(file)) {
+					System.out.printf("  MappedSkip  ");
+					ms = CPUTimer.timeFor(() -> { for(Integer k : intlist) built.add(k.longValue()); return null; });
+					System.out.printf("build: %,6dms  ", ms);
+				}
+
+				long start = System.nanoTime();
+				OffHeapLongSkipListSet reopened = OffHeapLongSkipListSet.open(file);
+				System.out.printf("reopen: %,.3fms  ", (System.nanoTime() - start) / 1e6);
+				ms = CPUTimer.timeFor(() -> { int hits = 0; for(Integer k : strikes) if(reopened.contains(k.longValue())) hits++; return hits; });
+				System.out.printf("find: %,6dms\n", ms);
+				reopened.close();
+			}
+			finally {
+				Files.deleteIfExists(file);
+			}
+		}
+		catch (IOException e) {
+			System.out.println(e.toString());
+		}
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
+	public static void executeConcurrentIntCase(int listSize, int strikeSize, int threads) {
+		System.out.printf("CASE: %,d integers, %,d mixed finds/updates (10%% writes) on %d threads.  Generating...\n", listSize, strikeSize, threads);
+
+		ArrayList<Integer> intlist = generateIntArrayList(listSize);
+		ArrayList<Integer> strikes = generateStrikeList(intlist, strikeSize);
+		long ms;
+
+		if(true) {
+			LockFreeSkipListSet<Integer> lockFreeSet = new LockFreeSkipListSet<Integer>(intlist);
+
+			System.out.printf("  LockFreeSkipListSet    ");
+			ms = CPUTimer.timeFor(() -> { executeThreads(threads, lockFreeSet, intlist, strikes); return null; });
+			System.out.printf("mixed: %,6dms\n", ms);
+		}
+
+		System.gc();
+
+		if(true) {
+			Collection<Integer> lockedSet = Collections.synchronizedSortedSet(new SkipListSet<Integer>(intlist));
+
+			System.out.printf("  synchronized SkipList  ");
+			ms = CPUTimer.timeFor(() -> { executeThreads(threads, lockedSet, intlist, strikes); return null; });
+			System.out.printf("mixed: %,6dms\n", ms);
+		}
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
+	public static void executeParallelIntCase(int listSize) {
+		System.out.printf("CASE: %,d integers, sequential vs parallel stream sum on %d cores.  Generating...\n", listSize, Runtime.getRuntime().availableProcessors());
+
+		ArrayList<Integer> intlist = generateIntArrayList(listSize);
+		SkipListSet<Integer> skipListSet = new SkipListSet<Integer>(intlist);
+		long ms;
+
+		System.out.printf("  SkipListSet ");
+		ms = CPUTimer.timeFor(() -> skipListSet.stream().mapToLong(Integer::longValue).sum());
+		System.out.printf("stream: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> skipListSet.parallelStream().mapToLong(Integer::longValue).sum());
+		System.out.printf("parallel: %,6dms\n", ms);
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	public static void executeProfileCase(int listSize, int strikeSize) {
+		System.out.printf("CASE: %,d integers, %,d finds per SkipListSet profile, then 90%% removed.  Generating...\n", listSize, strikeSize);
+
+		ArrayList<Integer> intlist = generateIntArrayList(listSize);
+		ArrayList<Integer> strikes = generateStrikeList(intlist, strikeSize);
+		List<Integer> removes = intlist.subList(0, listSize / 10 * 9);
+		SkipListProfile[] profiles = { SkipListProfile.DEFAULT, SkipListProfile.COMPACT, SkipListProfile.MINIMAL };
+		long ms;
+
+		for(SkipListProfile profile : profiles) {
+			long before = usedHeap();
+			SkipListSet<Integer> skipListSet = new SkipListSet<Integer>(profile, null, profile.newLevelGenerator(RandomSeed));
+
+			for(Integer value : intlist) skipListSet.add(value);
+
+			long bytes = usedHeap() - before;
+
+			System.out.printf("  %-28s ", profile);
+			System.out.printf("%,5.1f B/element  ", (double) bytes / skipListSet.size());
+			ms = CPUTimer.timeFor(() -> executeFinds(skipListSet, strikes));
+			System.out.printf("find: %,6dms (%,d ns/find)  ", ms, ms * 1000000 / strikeSize);
+
+			int grown = skipListSet.MAX_HEIGHT;
+			skipListSet.removeAll(removes);
+			System.out.printf("height: %d -> %d\n", grown, skipListSet.MAX_HEIGHT);
+		}
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
+	/*
+	 * Times gets and a range scan over 1% of the int range on a map, then prints them with its size.
+	 */
+	private static void executeMapTimes(String label, NavigableMap<Integer, Integer> map, long bytes, ArrayList<Integer> strikes) {
+		long ms;
+
+		System.out.printf("  %-14s ", label);
+		System.out.printf("%,5.1f B/entry  ", (double) bytes / map.size());
+		ms = CPUTimer.timeFor(() -> { long sum = 0; for(Integer key : strikes) sum += map.get(key); return sum; });
+		System.out.printf("get: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> { long sum = 0; for(Integer value : map.subMap(0, Integer.MAX_VALUE / 50).values()) sum += value; return sum; });
+		System.out.printf("range: %,6dms\n", ms);
+	}
+
+	public static void executeMapCase(int listSize, int strikeSize) {
+		System.out.printf("CASE: %,d integer keys with values, SkipListSet index + HashMap vs SkipListMap vs TreeMap, %,d gets and a 1%% range.  Generating...\n", listSize, strikeSize);
+
+		ArrayList<Integer> intlist = generateIntArrayList(listSize);
+		ArrayList<Integer> strikes = generateStrikeList(intlist, strikeSize);
+		long ms;
+
+		long before = usedHeap();
+		SkipListSet<Integer> index = new SkipListSet<Integer>();
+		HashMap<Integer, Integer> values = new HashMap<Integer, Integer>();
+
+		for(Integer key : intlist) {
+			index.add(key);
+			values.put(key, key);
+		}
+
+		long bytes = usedHeap() - before;
+
+		System.out.printf("  %-14s ", "Index+HashMap");
+		System.out.printf("%,5.1f B/entry  ", (double) bytes / index.size());
+		ms = CPUTimer.timeFor(() -> { long sum = 0; for(Integer key : strikes) if(index.contains(key)) sum += values.get(key); return sum; });
+		System.out.printf("get: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> { long sum = 0; for(Integer key : index.subSet(0, Integer.MAX_VALUE / 50)) sum += values.get(key); return sum; });
+		System.out.printf("range: %,6dms\n", ms);
+
+		index.clear();
+		values.clear();
+
+		before = usedHeap();
+		SkipListMap<Integer, Integer> skipListMap = new SkipListMap<Integer, Integer>(SkipListMap.DEFAULT_HEIGHT_CEILING, new GeometricLevelGenerator(RandomSeed));
+		for(Integer key : intlist) skipListMap.put(key, key);
+		executeMapTimes("SkipListMap", skipListMap, usedHeap() - before, strikes);
+		skipListMap.clear();
+
+		before = usedHeap();
+		TreeMap<Integer, Integer> treeMap = new TreeMap<Integer, Integer>();
+		for(Integer key : intlist) treeMap.put(key, key);
+		executeMapTimes("TreeMap", treeMap, usedHeap() - before, strikes);
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
+	public static void executeMapCallbackCase(int listSize) {
+		System.out.printf("CASE: %,d even keys, computeIfAbsent on odd keys with a callback that puts over and removes other keys.  Generating...\n", listSize);
+
+		SkipListMap<Integer, Integer> map = new SkipListMap<Integer, Integer>(SkipListMap.DEFAULT_HEIGHT_CEILING, new GeometricLevelGenerator(RandomSeed));
+
+		for(int i = 0; i < listSize; i++) map.put(i * 2, i * 2);
+
+		long ms = CPUTimer.timeFor(() -> {
+			for(int i = 0; i < listSize - 1; i++) {
+				int other = RandomGenerator.nextInt(listSize) * 2;
+				map.computeIfAbsent(i * 2 + 1, k -> { map.put(other, -1); map.remove(-1 - other); return k; });
+			}
+			return map.size();
+		});
+
+		Integer previous = null;
+		boolean ordered = true;
+
+		for(Integer key : map.keySet()) {
+			if(previous != null && previous >= key) ordered = false;
+			previous = key;
+		}
+
+		System.out.printf("  SkipListMap    computeIfAbsent: %,6dms  size: %,d  ", ms, map.size());
+		System.out.printf(ordered && map.size() == listSize * 2 - 1 ? "keys in order\n" : "ERROR: keys out of order or missing\n");
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
+	public static void executeWorkloadCase(int keySpace, int opCount, int threads) {
+		System.out.printf("CASE: %,d keys, %,d operations per workload, half the keys preloaded.  Generating...\n", keySpace, opCount);
+
+		SkipListWorkload[] workloads = {
+			new SkipListWorkload(SkipListWorkload.Distribution.ZIPF, keySpace, 95, 5),
+			new SkipListWorkload(SkipListWorkload.Distribution.UNIFORM, keySpace, 50, 25),
+			new SkipListWorkload(SkipListWorkload.Distribution.SEQUENTIAL, keySpace, 0, 100),
+			new SkipListWorkload(SkipListWorkload.Distribution.REVERSE, keySpace, 0, 100)
+		};
+		long ms;
+
+		for(SkipListWorkload workload : workloads) {
+			SkipListWorkload.Trace trace = workload.generate(opCount, RandomSeed);
+			SkipListSet<Integer> skipListSet = new SkipListSet<Integer>();
+			TreeSet<Integer> treeSet = new TreeSet<Integer>();
+
+			workload.preload(skipListSet, 0.5, RandomSeed);
+			workload.preload(treeSet, 0.5, RandomSeed);
+
+			System.out.printf("  %-22s ", workload);
+			ms = CPUTimer.timeFor(() -> SkipListWorkload.replay(trace, skipListSet));
+			System.out.printf("SkipListSet: %,6dms  ", ms);
+			ms = CPUTimer.timeFor(() -> SkipListWorkload.replay(trace, treeSet));
+			System.out.printf("TreeSet: %,6dms\n", ms);
+
+			if(!treeSet.equals(skipListSet)) {
+				System.out.printf("  ERROR: SkipListSet and TreeSet differ after replay\n");
+			}
+		}
+
+		System.gc();
+
+		SkipListWorkload mixed = new SkipListWorkload(SkipListWorkload.Distribution.ZIPF, keySpace, 90, 5);
+		SkipListWorkload.Trace recorded = mixed.generate(opCount, RandomSeed);
+		SkipListWorkload.Trace trace;
+
+		try {
+			Path file = Files.createTempFile("skiplist", ".trace");
+
+			recorded.write(file);
+			trace = SkipListWorkload.Trace.read(file);
+			Files.delete(file);
+		} catch (IOException e) {
+			System.out.printf("  ERROR: could not record the trace: %s\n", e);
+			return;
+		}
+
+		SkipListSet<Integer> first = new SkipListSet<Integer>();
+		SkipListSet<Integer> second = new SkipListSet<Integer>();
+
+		mixed.preload(first, 0.5, RandomSeed);
+		mixed.preload(second, 0.5, RandomSeed);
+
+		if(SkipListWorkload.replay(recorded, first) != SkipListWorkload.replay(trace, second) || !first.equals(second)) {
+			System.out.printf("  ERROR: replayed trace does not match the recorded one\n");
+		}
+
+		if(true) {
+			LockFreeSkipListSet<Integer> lockFreeSet = new LockFreeSkipListSet<Integer>();
+
+			mixed.preload(lockFreeSet, 0.5, RandomSeed);
+			System.out.printf("  %-22s LockFreeSkipListSet on %d threads: %,6dms  ", mixed, threads,
+					CPUTimer.timeFor(() -> SkipListWorkload.replay(trace, lockFreeSet, threads)));
+		}
+
+		System.gc();
+
+		if(true) {
+			ConcurrentSkipListSet<Integer> concurrentSet = new ConcurrentSkipListSet<Integer>();
+
+			mixed.preload(concurrentSet, 0.5, RandomSeed);
+			System.out.printf("ConcurrentSkipListSet: %,6dms\n",
+					CPUTimer.timeFor(() -> SkipListWorkload.replay(trace, concurrentSet, threads)));
+		}
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
+	public static void executeStatsCase(int listSize, int strikeSize) {
+		System.out.printf("CASE: %,d integers, %,d finds with stats off and on, then half removed and rebalanced.  Generating...\n", listSize, strikeSize);
+
+		ArrayList<Integer> intlist = generateIntArrayList(listSize);
+		ArrayList<Integer> strikes = generateStrikeList(intlist, strikeSize);
+		SkipListSet<Integer> skipListSet = new SkipListSet<Integer>(new GeometricLevelGenerator(RandomSeed));
+		long ms;
+
+		for(Integer value : intlist) skipListSet.add(value);
+
+		System.out.printf("  SkipListSet ");
+		ms = CPUTimer.timeFor(() -> executeFinds(skipListSet, strikes));
+		System.out.printf("stats off: %,6dms  ", ms);
+
+		SkipListStats stats = skipListSet.enableStats();
+
+		ms = CPUTimer.timeFor(() -> executeFinds(skipListSet, strikes));
+		System.out.printf("stats on: %,6dms\n", ms);
+
+		try {
+			stats.register("harness");
+		} catch (JMException e) {
+			System.out.printf("  could not register the stats MBean: %s\n", e);
+		}
+
+		System.out.printf("  added:      %s\n", stats.snapshot());
+
+		skipListSet.removeAll(intlist.subList(0, listSize / 2));
+		stats.reset();
+		System.out.printf("  removed:    ");
+		executeFinds(skipListSet, strikes);
+		System.out.printf("%s\n", stats.snapshot());
+
+		skipListSet.reBalance();
+		stats.reset();
+		System.out.printf("  rebalanced: ");
+		executeFinds(skipListSet, strikes);
+		System.out.printf("%s\n", stats.snapshot());
+
+		skipListSet.disableStats();
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
+	public static void executeBatchCase(int listSize, int batchSize, int batches) {
+		System.out.printf("CASE: %,d integers, %,d batches of %,d finds/adds/removes, one at a time vs batched.  Generating...\n", listSize, batches, batchSize);
+
+		ArrayList<Integer> intlist = generateIntArrayList(listSize);
+		ArrayList<Integer[]> finds = new ArrayList<Integer[]>();
+		ArrayList<Integer[]> adds = new ArrayList<Integer[]>();
+		long ms;
+
+		for(int i = 0; i < batches; i++) {
+			finds.add(generateStrikeList(intlist, batchSize).toArray(new Integer[0]));
+			adds.add(generateIntArrayList(batchSize).toArray(new Integer[0]));
+		}
+
+		SkipListSet<Integer> single = new SkipListSet<Integer>(intlist);
+		SkipListSet<Integer> batched = new SkipListSet<Integer>(intlist);
+		boolean[] results = new boolean[batchSize];
+
+		System.out.printf("  one at a time ");
+		ms = CPUTimer.timeFor(() -> { for(Integer[] batch : finds) for(Integer value : batch) single.contains(value); return null; });
+		System.out.printf("find: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> { for(Integer[] batch : adds) for(Integer value : batch) single.add(value); return null; });
+		System.out.printf("add: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> { for(Integer[] batch : adds) for(Integer value : batch) single.remove(value); return null; });
+		System.out.printf("delete: %,6dms\n", ms);
+
+		System.out.printf("  batched       ");
+		ms = CPUTimer.timeFor(() -> { for(Integer[] batch : finds) batched.containsBatch(batch, results); return null; });
+		System.out.printf("find: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> { for(Integer[] batch : adds) batched.addBatch(batch); return null; });
+		System.out.printf("add: %,6dms  ", ms);
+		ms = CPUTimer.timeFor(() -> { for(Integer[] batch : adds) batched.removeBatch(batch); return null; });
+		System.out.printf("delete: %,6dms\n", ms);
+
+		if(!single.equals(batched)) {
+			System.out.printf("  ERROR: batched and one at a time sets differ\n");
+		}
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
+	private static <T> void executeSnapshot(String label, SkipListSet<T> skipListSet, SkipListCodec<T> codec) throws IOException {
+		Path file = Files.createTempFile("skiplist", ".snapshot");
+		Path serialized = Files.createTempFile("skiplist", ".ser");
+		SkipListSet<T> restored = new SkipListSet<T>();
+		long ms;
+
+		try {
+			System.out.printf("  %-8s snapshot ", label);
+			ms = CPUTimer.timeFor(() -> {
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+					skipListSet.writeTo(channel, codec, false);
+				}
+				return null;
+			});
+			System.out.printf("write: %,6dms  ", ms);
+			ms = CPUTimer.timeFor(() -> {
+				try (FileChannel channel = FileChannel.open(file)) {
+					restored.readFrom(channel, codec);
+				}
+				return null;
+			});
+			System.out.printf("read: %,6dms  %,5.1f B/item\n", ms, (double) Files.size(file) / skipListSet.size());
+
+			System.out.printf("  %-8s toArray  ", label);
+			ms = CPUTimer.timeFor(() -> {
+				try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(serialized)))) {
+					out.writeObject(skipListSet.toArray());
+				}
+				return null;
+			});
+			System.out.printf("write: %,6dms  ", ms);
+			ms = CPUTimer.timeFor(() -> {
+				try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(serialized)))) {
+					return new SkipListSet<Object>(Arrays.asList((Object[]) in.readObject()));
+				}
+			});
+			System.out.printf("read: %,6dms  %,5.1f B/item\n", ms, (double) Files.size(serialized) / skipListSet.size());
+		} finally {
+			Files.delete(file);
+			Files.delete(serialized);
+		}
+
+		if(!Arrays.equals(skipListSet.toArray(), restored.toArray())) {
+			System.out.printf("  ERROR: restored %s snapshot differs\n", label);
+		}
+	}
+
+	public static void executeSnapshotCase(int listSize, int stringSize) {
+		System.out.printf("CASE: %,d integers and %,d strings written to and read from a file, snapshot vs serialized toArray.  Generating...\n", listSize, listSize / 10);
+
+		SkipListSet<Integer> ints = new SkipListSet<Integer>(generateIntArrayList(listSize));
+		SkipListSet<String> strings = new SkipListSet<String>(generateStringArrayList(listSize / 10, stringSize));
+
+		try {
+			executeSnapshot("Integer", ints, SkipListCodecs.INTEGER);
+			executeSnapshot("String", strings, SkipListCodecs.STRING);
+		} catch (IOException e) {
+			System.out.printf("  ERROR: %s\n", e);
+		}
+
+		System.gc();
+
+		System.out.printf("\n");
+	}
+
 	public SkipListTestHarness() {}
 	
 	public static void main(String args[]) {
@@ -255,5 +870,29 @@ public class SkipListTestHarness
 		System.gc();
 		SkipListTestHarness.executeIntCase(10000000, 10000000, false, true);	
 		System.gc();		
+		SkipListTestHarness.executeIndexedIntCase(10000000, 1000000);
+		System.gc();
+		SkipListTestHarness.executePersistentIntCase(10000000, 1000000);
+		System.gc();
+		SkipListTestHarness.executeConcurrentIntCase(1000000, 1000000, Runtime.getRuntime().availableProcessors());
+		System.gc();
+		SkipListTestHarness.executeParallelIntCase(10000000);
+		System.gc();
+		SkipListTestHarness.executeProfileCase(10000000, 1000000);
+		System.gc();
+		SkipListTestHarness.executeMapCase(1000000, 1000000);
+		System.gc();
+		SkipListTestHarness.executeMapCallbackCase(100000);
+		System.gc();
+		SkipListTestHarness.executeWorkloadCase(1000000, 1000000, Runtime.getRuntime().availableProcessors());
+		System.gc();
+		SkipListTestHarness.executeStatsCase(1000000, 1000000);
+		System.gc();
+		SkipListTestHarness.executeBatchCase(1000000, 10000, 100);
+		System.gc();
+		SkipListTestHarness.executeBatchCase(1000000, 100000, 10);
+		System.gc();
+		SkipListTestHarness.executeSnapshotCase(1000000, 100);
+		System.gc();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,342 @@
+
+/*
+ * Workload engine for the harness, for running the sets under traffic shaped like production
+ * instead of the harness's add all / find all / delete all phases over uniform random keys.
+ *
+ * A workload is a key distribution plus an operation mix:
+ *   UNIFORM     every key in the key space equally likely
+ *   SEQUENTIAL  keys in ascending order (timestamps, ids), wrapping at the end of the key space
+ *   REVERSE     keys in descending order
+ *   ZIPF        a few hot keys get most of the traffic (YCSB style, theta 0.99 by default),
+ *               the hot keys are scattered over the int range rather than next to each other
+ * and the percentage of contains, adds and removes (e.g. 95/5/0 for read mostly traffic).
+ *
+ * generate turns a workload into a Trace, a fixed list of operations that can be written to a
+ * file and read back, so the same traffic (or one recorded elsewhere) can be replayed against
+ * every set. replay runs a trace on one thread or split over several.
+ *
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * external class, a workload description that generates traces, plus the trace type and the replay drivers
+ */
+public class SkipListWorkload {
+	static final byte ADD = 0;
+	static final byte CONTAINS = 1;
+	static final byte REMOVE = 2;
+
+	static final int TRACE_MAGIC = 0x534C5754;	/* "SLWT" */
+	static final int TRACE_VERSION = 1;
+	static final int TRACE_HEADER_BYTES = 12;	/* magic, version, count */
+	static final int TRACE_ENTRY_BYTES = 5;	/* op byte, int key */
+	static final double DEFAULT_THETA = 0.99;
+
+	/*
+	 * how keys are picked from the key space.
+	 */
+	public enum Distribution {
+		UNIFORM, SEQUENTIAL, REVERSE, ZIPF
+	}
+
+	final Distribution distribution;
+	final int keySpace;	/* number of distinct keys */
+	final double theta;	/* Zipf skew, only used by ZIPF */
+	final int readPercent;	/* share of contains */
+	final int addPercent;	/* share of adds, the rest are removes */
+
+	private double zetaN;	/* Zipf constants, worked out once per workload */
+	private double alpha;
+	private double eta;
+
+	/*
+	 * constructor for a workload. Takes in the distribution, the number of distinct keys and the
+	 * percentage of contains and adds (the rest are removes). Zipf uses theta 0.99.
+	 */
+	public SkipListWorkload(Distribution distribution, int keySpace, int readPercent, int addPercent) {
+		this(distribution, keySpace, DEFAULT_THETA, readPercent, addPercent);
+	}
+
+	/*
+	 * constructor for a workload. Takes in the distribution, the number of distinct keys, the Zipf
+	 * skew (between 0 and 1, higher is more skewed) and the percentage of contains and adds.
+	 * Throws an exception if the key space is empty or the percentages don't add up.
+	 */
+	public SkipListWorkload(Distribution distribution, int keySpace, double theta, int readPercent, int addPercent) {
+		if (keySpace < 1) {
+			throw new IllegalArgumentException("keySpace must be at least 1");
+		}
+
+		if (readPercent < 0 || addPercent < 0 || readPercent + addPercent > 100) {
+			throw new IllegalArgumentException("readPercent + addPercent must be between 0 and 100");
+		}
+
+		if (distribution == Distribution.ZIPF && (theta <= 0 || theta >= 1)) {
+			throw new IllegalArgumentException("theta must be between 0 and 1");
+		}
+
+		this.distribution = distribution;
+		this.keySpace = keySpace;
+		this.theta = theta;
+		this.readPercent = readPercent;
+		this.addPercent = addPercent;
+
+		if (distribution == Distribution.ZIPF) {
+			zetaN = zeta(keySpace, theta);
+			alpha = 1.0 / (1.0 - theta);
+			eta = (1 - Math.pow(2.0 / keySpace, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+		}
+	}
+
+	/*
+	 * A fixed list of operations and their keys, kept as two flat arrays so a trace of
+	 * millions of operations doesn't cost an object each.
+	 */
+	public static class Trace {
+		final byte[] ops;
+		final int[] keys;
+
+		Trace(byte[] ops, int[] keys) {
+			this.ops = ops;
+			this.keys = keys;
+		}
+
+		/*
+		 * Takes no input. Returns the number of operations.
+		 */
+		public int size() {
+			return ops.length;
+		}
+
+		/*
+		 * Takes in a file path. Writes the trace to it: a magic number, the version, the count,
+		 * then one op byte and one int key per operation.
+		 */
+		public void write(Path file) throws IOException {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+				out.writeInt(TRACE_MAGIC);
+				out.writeInt(TRACE_VERSION);
+				out.writeInt(ops.length);
+
+				for (int i = 0; i < ops.length; i++) {
+					out.writeByte(ops[i]);
+					out.writeInt(keys[i]);
+				}
+			}
+		}
+
+		/*
+		 * Takes in a file path. Reads a trace written by write, or recorded by anything else in
+		 * the same format. Throws an IOException if it is not a trace of this version or its
+		 * count doesn't fit the file, before allocating anything for it.
+		 */
+		public static Trace read(Path file) throws IOException {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+				if (in.readInt() != TRACE_MAGIC || in.readInt() != TRACE_VERSION) {
+					throw new IOException(file + " is not a workload trace of version " + TRACE_VERSION);
+				}
+
+				int count = in.readInt();
+
+				if (count < 0 || (long) count * TRACE_ENTRY_BYTES > Files.size(file) - TRACE_HEADER_BYTES) {
+					throw new IOException(file + " has a bad operation count " + count);
+				}
+
+				byte[] ops = new byte[count];
+				int[] keys = new int[count];
+
+				for (int i = 0; i < count; i++) {
+					ops[i] = in.readByte();
+					keys[i] = in.readInt();
+
+					if (ops[i] < ADD || ops[i] > REMOVE) {
+						throw new IOException(file + " has an unknown operation at " + i);
+					}
+				}
+
+				return new Trace(ops, keys);
+			}
+		}
+	}
+
+	/*
+	 * Takes in the number of operations and a seed. Returns a trace of that many operations,
+	 * the same seed giving the same trace.
+	 */
+	public Trace generate(int count, long seed) {
+		Random random = new Random(seed);
+		byte[] ops = new byte[count];
+		int[] keys = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			int roll = random.nextInt(100);
+
+			ops[i] = roll < readPercent ? CONTAINS : roll < readPercent + addPercent ? ADD : REMOVE;
+			keys[i] = keyFor(nextRank(random, i));
+		}
+
+		return new Trace(ops, keys);
+	}
+
+	/*
+	 * Takes in a collection, the share of the key space to load (0 to 1) and a seed.
+	 * Adds that share of the keys, so a read mostly trace mostly finds what it looks for.
+	 */
+	public void preload(Collection<Integer> coll, double fraction, long seed) {
+		Random random = new Random(seed);
+
+		for (int rank = 0; rank < keySpace; rank++) {
+			if (random.nextDouble() < fraction) {
+				coll.add(keyFor(rank));
+			}
+		}
+	}
+
+	/*
+	 * Takes in a trace and a collection. Runs every operation in order on this thread.
+	 * Returns how many of them succeeded (found, added or removed something).
+	 */
+	public static long replay(Trace trace, Collection<Integer> coll) {
+		return replay(trace, coll, 0, trace.size());
+	}
+
+	/*
+	 * Takes in a trace, a collection safe for concurrent use and the number of threads.
+	 * Splits the trace into that many runs of operations in a row, one per thread, starts them
+	 * together and waits for all of them. Returns how many operations succeeded.
+	 */
+	public static long replay(Trace trace, Collection<Integer> coll, int threads) {
+		Thread[] workers = new Thread[threads];
+		AtomicLong succeeded = new AtomicLong();
+
+		for (int t = 0; t < threads; t++) {
+			final int from = (int) ((long) trace.size() * t / threads);
+			final int to = (int) ((long) trace.size() * (t + 1) / threads);
+			workers[t] = new Thread(() -> succeeded.addAndGet(replay(trace, coll, from, to)));
+		}
+
+		for (Thread worker : workers) {
+			worker.start();
+		}
+
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return succeeded.get();
+	}
+
+	/*
+	 * Takes in a trace, a collection and a range of operations. Runs them in order and returns
+	 * how many succeeded.
+	 */
+	private static long replay(Trace trace, Collection<Integer> coll, int from, int to) {
+		byte[] ops = trace.ops;
+		int[] keys = trace.keys;
+		long succeeded = 0;
+
+		for (int i = from; i < to; i++) {
+			Integer key = keys[i];
+			boolean done;
+
+			switch (ops[i]) {
+			case ADD:
+				done = coll.add(key);
+				break;
+			case REMOVE:
+				done = coll.remove(key);
+				break;
+			default:
+				done = coll.contains(key);
+				break;
+			}
+
+			if (done) {
+				succeeded++;
+			}
+		}
+
+		return succeeded;
+	}
+
+	/*
+	 * Takes in the random source and the operation number. Returns the rank (0 based position
+	 * in the key space) of the key that operation uses.
+	 */
+	private int nextRank(Random random, int i) {
+		switch (distribution) {
+		case SEQUENTIAL:
+			return i % keySpace;
+		case REVERSE:
+			return keySpace - 1 - i % keySpace;
+		case ZIPF:
+			return zipfRank(random);
+		default:
+			return random.nextInt(keySpace);
+		}
+	}
+
+	/*
+	 * Takes in a rank. Returns its key: the rank itself, except for ZIPF, where ranks are spread
+	 * over the positive ints with a multiply by an odd constant (a one to one mapping) so the hot
+	 * keys don't all sit at the start of the list.
+	 */
+	int keyFor(int rank) {
+		if (distribution == Distribution.ZIPF) {
+			return (int) ((rank * 0x9E3779B1L) & 0x7FFFFFFF);
+		}
+
+		return rank;
+	}
+
+	/*
+	 * Takes in the random source. Returns a Zipf distributed rank, rank 0 being the hottest,
+	 * using the constant time method from Gray et al. that YCSB uses.
+	 */
+	private int zipfRank(Random random) {
+		double u = random.nextDouble();
+		double uz = u * zetaN;
+
+		if (uz < 1.0) {
+			return 0;
+		}
+
+		if (uz < 1.0 + Math.pow(0.5, theta)) {
+			return Math.min(1, keySpace - 1);
+		}
+
+		return Math.min(keySpace - 1, (int) (keySpace * Math.pow(eta * u - eta + 1, alpha)));
+	}
+
+	/*
+	 * Takes in a count and theta. Returns the sum of 1 / i^theta for i from 1 to the count.
+	 */
+	private static double zeta(int n, double theta) {
+		double sum = 0;
+
+		for (int i = 1; i <= n; i++) {
+			sum += 1 / Math.pow(i, theta);
+		}
+
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		return distribution + " " + readPercent + "/" + addPercent + "/" + (100 - readPercent - addPercent);
+	}
+}